@@ -0,0 +1,140 @@
+package com.example.eventsourcing.benchmark;
+
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventHandlers;
+import com.example.eventsourcing.domain.account.AccountClosed;
+import com.example.eventsourcing.domain.account.AccountOpened;
+import com.example.eventsourcing.domain.account.BankAccount;
+import com.example.eventsourcing.domain.account.MoneyDeposited;
+import com.example.eventsourcing.domain.account.MoneyWithdrawn;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Compares replaying events through a {@code switch} on {@link DomainEvent#getEventType()}
+ * with replaying them through an {@link EventHandlers} table, then times a full
+ * {@link BankAccount} replay.
+ * <p>
+ * Run with {@code mvn compile exec:java -Dexec.mainClass="com.example.eventsourcing.benchmark.EventDispatchBenchmark"}.
+ * Each measurement is preceded by warm-up rounds; pass the number of events as the first
+ * argument to change the stream length.
+ */
+public class EventDispatchBenchmark {
+    
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 20;
+    
+    private static volatile long blackhole;
+    
+    private static final EventHandlers<Totals> HANDLERS = EventHandlers.<Totals>builder()
+        .on(AccountOpened.class, Totals::opened)
+        .on(MoneyDeposited.class, Totals::deposited)
+        .on(MoneyWithdrawn.class, Totals::withdrawn)
+        .on(AccountClosed.class, Totals::closed)
+        .build();
+    
+    public static void main(String[] args) {
+        int eventCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        
+        BankAccount account = new BankAccount("Benchmark", "CHECKING", new BigDecimal("1000.00"));
+        for (int i = 1; i < eventCount; i++) {
+            if (i % 3 == 0) {
+                account.withdraw(new BigDecimal("1.00"), "Withdrawal", "Benchmark");
+            } else {
+                account.deposit(new BigDecimal("1.00"), "Deposit", "Benchmark");
+            }
+        }
+        List<DomainEvent> events = account.getUncommittedEvents();
+        String accountId = account.getId();
+        
+        System.out.printf("Replaying %,d events, %d measured rounds each%n", events.size(), MEASURED_ROUNDS);
+        
+        double switchNanos = measure(() -> {
+            Totals totals = new Totals();
+            for (DomainEvent event : events) {
+                switchDispatch(totals, event);
+            }
+            return totals.checksum();
+        }, events.size());
+        double tableNanos = measure(() -> {
+            Totals totals = new Totals();
+            for (DomainEvent event : events) {
+                HANDLERS.dispatch(totals, event);
+            }
+            return totals.checksum();
+        }, events.size());
+        double replayNanos = measure(() -> new BankAccount(accountId, events).getVersion(), events.size());
+        
+        System.out.printf("String switch dispatch:  %6.2f ns/event%n", switchNanos);
+        System.out.printf("EventHandlers dispatch:  %6.2f ns/event (%.2fx)%n", tableNanos, switchNanos / tableNanos);
+        System.out.printf("BankAccount replay:      %6.2f ns/event%n", replayNanos);
+    }
+    
+    private static void switchDispatch(Totals totals, DomainEvent event) {
+        switch (event.getEventType()) {
+            case "AccountOpened":
+                totals.opened((AccountOpened) event);
+                break;
+            case "MoneyDeposited":
+                totals.deposited((MoneyDeposited) event);
+                break;
+            case "MoneyWithdrawn":
+                totals.withdrawn((MoneyWithdrawn) event);
+                break;
+            case "AccountClosed":
+                totals.closed((AccountClosed) event);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private interface Round {
+        long run();
+    }
+    
+    private static double measure(Round round, int events) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += round.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += round.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        blackhole = sink;
+        return (double) elapsed / MEASURED_ROUNDS / events;
+    }
+    
+    private static final class Totals {
+        private long opened;
+        private long deposits;
+        private long withdrawals;
+        private long lastVersion;
+        
+        void opened(AccountOpened event) {
+            opened++;
+            lastVersion = event.getAggregateVersion();
+        }
+        
+        void deposited(MoneyDeposited event) {
+            deposits++;
+            lastVersion = event.getAggregateVersion();
+        }
+        
+        void withdrawn(MoneyWithdrawn event) {
+            withdrawals++;
+            lastVersion = event.getAggregateVersion();
+        }
+        
+        void closed(AccountClosed event) {
+            lastVersion = event.getAggregateVersion();
+        }
+        
+        long checksum() {
+            return opened + deposits * 3 + withdrawals * 7 + lastVersion;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.eventsourcing.benchmark;
+
+import com.example.eventsourcing.domain.account.Money;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+/**
+ * Compares summing amounts as {@link BigDecimal} with summing them as {@link Money} minor
+ * units, reporting the time and the bytes allocated per addition.
+ * <p>
+ * Run with {@code mvn compile exec:java -Dexec.mainClass="com.example.eventsourcing.benchmark.MoneyBenchmark"}.
+ * Each measurement is preceded by warm-up rounds; pass the number of additions per round
+ * as the first argument to change it.
+ */
+public class MoneyBenchmark {
+    
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 20;
+    
+    private static volatile long blackhole;
+    
+    public static void main(String[] args) {
+        int additions = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        
+        BigDecimal[] decimals = new BigDecimal[1024];
+        long[] minorUnits = new long[decimals.length];
+        for (int i = 0; i < decimals.length; i++) {
+            decimals[i] = BigDecimal.valueOf(100 + i * 37L, Money.SCALE);
+            minorUnits[i] = Money.toMinorUnits(decimals[i]);
+        }
+        int mask = decimals.length - 1;
+        
+        System.out.printf("Summing %,d amounts, %d measured rounds each%n", additions, MEASURED_ROUNDS);
+        
+        Result decimal = measure(() -> {
+            BigDecimal total = BigDecimal.ZERO;
+            for (int i = 0; i < additions; i++) {
+                total = total.add(decimals[i & mask]);
+            }
+            return total.unscaledValue().longValue();
+        }, additions);
+        Result scaled = measure(() -> {
+            long total = 0;
+            for (int i = 0; i < additions; i++) {
+                total = Money.add(total, minorUnits[i & mask]);
+            }
+            return total;
+        }, additions);
+        
+        System.out.printf("BigDecimal.add:  %6.2f ns/add, %6.1f bytes/add%n", decimal.nanos, decimal.bytes);
+        System.out.printf("Money.add:       %6.2f ns/add, %6.1f bytes/add (%.2fx)%n",
+                scaled.nanos, scaled.bytes, decimal.nanos / scaled.nanos);
+    }
+    
+    private interface Round {
+        long run();
+    }
+    
+    private static final class Result {
+        private final double nanos;
+        private final double bytes;
+        
+        Result(double nanos, double bytes) {
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+    }
+    
+    private static Result measure(Round round, int operations) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += round.run();
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += round.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        blackhole = sink;
+        double total = (double) MEASURED_ROUNDS * operations;
+        double bytes = allocatedBefore < 0 ? Double.NaN : (allocatedAfter - allocatedBefore) / total;
+        return new Result(elapsed / total, bytes);
+    }
+    
+    /**
+     * Bytes allocated so far by the current thread, or -1 where the JVM does not report it.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
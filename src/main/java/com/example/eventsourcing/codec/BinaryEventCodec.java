@@ -0,0 +1,233 @@
+package com.example.eventsourcing.codec;
+
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventSerializer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of events described by an {@link EventTypeRegistry}.
+ * <p>
+ * Each event starts with a fixed 31 byte header: the type id (2 bytes), the schema
+ * version (1 byte), the event id (16 bytes) and the occurrence time as epoch seconds
+ * (8 bytes) and nanoseconds (4 bytes). Variable-length fields follow: the aggregate
+ * version and sequence number as varints, the aggregate id, then the payload in schema
+ * order. Strings are a varint length plus one (zero for {@code null}) followed by UTF-8
+ * bytes; amounts are a scale byte followed by the zigzag varint of the unscaled value.
+ */
+public class BinaryEventCodec implements EventSerializer {
+    
+    private static final byte NULL_SCALE = Byte.MIN_VALUE;
+    
+    private static final ThreadLocal<Output> OUTPUT = ThreadLocal.withInitial(Output::new);
+    
+    private final EventTypeRegistry registry;
+    
+    public BinaryEventCodec(EventTypeRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @Override
+    public byte[] serialize(DomainEvent event) {
+        EventSchema<DomainEvent> schema = registry.schemaFor(event);
+        Output out = OUTPUT.get();
+        out.reset();
+        
+        out.writeShort(schema.getTypeId());
+        out.writeByte(schema.getVersion());
+        out.writeLong(event.getEventId().getMostSignificantBits());
+        out.writeLong(event.getEventId().getLeastSignificantBits());
+        out.writeLong(event.getOccurredAt().getEpochSecond());
+        out.writeInt(event.getOccurredAt().getNano());
+        out.writeVarLong(event.getAggregateVersion());
+        out.writeVarLong(event.getSequenceNumber());
+        out.writeString(null, event.getAggregateId());
+        schema.write(event, out);
+        
+        return out.toByteArray();
+    }
+    
+    @Override
+    public DomainEvent deserialize(ByteBuffer buffer) {
+        int typeId = Short.toUnsignedInt(buffer.getShort());
+        int schemaVersion = Byte.toUnsignedInt(buffer.get());
+        UUID eventId = new UUID(buffer.getLong(), buffer.getLong());
+        Instant occurredAt = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        
+        Input in = new Input(buffer);
+        long aggregateVersion = in.readVarLong();
+        long sequenceNumber = in.readVarLong();
+        String aggregateId = in.readString(null);
+        
+        EventSchema<?> schema = registry.schemaFor(typeId);
+        return schema.read(new EventHeader(eventId, aggregateId, aggregateVersion, occurredAt, sequenceNumber),
+            in, schemaVersion);
+    }
+    
+    private static final class Output implements FieldWriter {
+        private byte[] bytes = new byte[256];
+        private int size;
+        
+        void reset() {
+            size = 0;
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+        
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+        
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeShort(int value) {
+            ensure(2);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+        
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+        
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+        
+        @Override
+        public void writeString(String name, String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length + 1L);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+        
+        @Override
+        public void writeLong(String name, long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+        
+        @Override
+        public void writeAmount(String name, BigDecimal value) {
+            if (value == null) {
+                writeByte(NULL_SCALE);
+                return;
+            }
+            int scale = value.scale();
+            if (scale <= NULL_SCALE || scale > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException(name + " has an unsupported scale: " + value);
+            }
+            BigInteger unscaled = value.unscaledValue();
+            if (unscaled.bitLength() > 63) {
+                throw new IllegalArgumentException(name + " does not fit in a scaled long: " + value);
+            }
+            writeByte(scale);
+            writeLong(name, unscaled.longValue());
+        }
+        
+        @Override
+        public void writeAmount(String name, long unscaledValue, int scale) {
+            if (scale <= NULL_SCALE || scale > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException(name + " has an unsupported scale: " + scale);
+            }
+            writeByte(scale);
+            writeLong(name, unscaledValue);
+        }
+    }
+    
+    private static final class Input implements FieldReader {
+        private final ByteBuffer buffer;
+        
+        Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+        
+        @Override
+        public String readString(String name) {
+            long length = readVarLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            int n = (int) length;
+            String value;
+            if (buffer.hasArray()) {
+                value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), n, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + n);
+            } else {
+                byte[] utf8 = new byte[n];
+                buffer.get(utf8);
+                value = new String(utf8, StandardCharsets.UTF_8);
+            }
+            return value;
+        }
+        
+        @Override
+        public long readLong(String name) {
+            long zigzag = readVarLong();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        
+        @Override
+        public BigDecimal readAmount(String name) {
+            byte scale = buffer.get();
+            if (scale == NULL_SCALE) {
+                return null;
+            }
+            return BigDecimal.valueOf(readLong(name), scale);
+        }
+        
+        @Override
+        public long readAmount(String name, int scale) {
+            if (buffer.get(buffer.position()) != scale) {
+                return FieldReader.super.readAmount(name, scale);
+            }
+            buffer.get();
+            return readLong(name);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.eventsourcing.codec;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * The fields every event carries, decoded ahead of the type-specific payload.
+ */
+public final class EventHeader {
+    
+    private final UUID eventId;
+    private final String aggregateId;
+    private final long aggregateVersion;
+    private final Instant occurredAt;
+    private final long sequenceNumber;
+    
+    public EventHeader(UUID eventId, String aggregateId, long aggregateVersion,
+                       Instant occurredAt, long sequenceNumber) {
+        this.eventId = eventId;
+        this.aggregateId = aggregateId;
+        this.aggregateVersion = aggregateVersion;
+        this.occurredAt = occurredAt;
+        this.sequenceNumber = sequenceNumber;
+    }
+    
+    public UUID getEventId() {
+        return eventId;
+    }
+    
+    public String getAggregateId() {
+        return aggregateId;
+    }
+    
+    public long getAggregateVersion() {
+        return aggregateVersion;
+    }
+    
+    public Instant getOccurredAt() {
+        return occurredAt;
+    }
+    
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+}
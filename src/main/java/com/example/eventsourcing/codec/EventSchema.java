@@ -0,0 +1,74 @@
+package com.example.eventsourcing.codec;
+
+import com.example.eventsourcing.core.DomainEvent;
+
+/**
+ * Describes how one event class is encoded. The type id and event type name identify the
+ * class on the wire; the schema version is stored with every event so that {@link #read}
+ * can still decode payloads written by an older version of the schema.
+ */
+public interface EventSchema<E extends DomainEvent> {
+    
+    int getTypeId();
+    
+    String getEventType();
+    
+    Class<E> getEventClass();
+    
+    int getVersion();
+    
+    void write(E event, FieldWriter out);
+    
+    E read(EventHeader header, FieldReader in, int schemaVersion);
+    
+    @FunctionalInterface
+    interface Writer<E> {
+        void write(E event, FieldWriter out);
+    }
+    
+    @FunctionalInterface
+    interface Reader<E> {
+        E read(EventHeader header, FieldReader in, int schemaVersion);
+    }
+    
+    static <E extends DomainEvent> EventSchema<E> of(int typeId, String eventType, Class<E> eventClass,
+                                                      int version, Writer<E> writer, Reader<E> reader) {
+        if (typeId <= 0 || typeId > 0xFFFF) {
+            throw new IllegalArgumentException("Type id must be between 1 and 65535: " + typeId);
+        }
+        if (version <= 0 || version > 0xFF) {
+            throw new IllegalArgumentException("Schema version must be between 1 and 255: " + version);
+        }
+        return new EventSchema<E>() {
+            @Override
+            public int getTypeId() {
+                return typeId;
+            }
+            
+            @Override
+            public String getEventType() {
+                return eventType;
+            }
+            
+            @Override
+            public Class<E> getEventClass() {
+                return eventClass;
+            }
+            
+            @Override
+            public int getVersion() {
+                return version;
+            }
+            
+            @Override
+            public void write(E event, FieldWriter out) {
+                writer.write(event, out);
+            }
+            
+            @Override
+            public E read(EventHeader header, FieldReader in, int schemaVersion) {
+                return reader.read(header, in, schemaVersion);
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.eventsourcing.codec;
+
+import com.example.eventsourcing.core.DomainEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The set of event schemas a codec understands, looked up by type id, event type name
+ * or event class. Registration is expected to finish before the registry is shared.
+ */
+public class EventTypeRegistry {
+    
+    private final Map<Integer, EventSchema<?>> byTypeId = new HashMap<>();
+    private final Map<String, EventSchema<?>> byEventType = new HashMap<>();
+    private final Map<Class<?>, EventSchema<?>> byClass = new HashMap<>();
+    private final List<EventSchema<?>> schemas = new ArrayList<>();
+    
+    public EventTypeRegistry register(EventSchema<?> schema) {
+        if (byTypeId.containsKey(schema.getTypeId())) {
+            throw new IllegalArgumentException("Type id " + schema.getTypeId() + " is already registered for "
+                + byTypeId.get(schema.getTypeId()).getEventType());
+        }
+        if (byEventType.containsKey(schema.getEventType()) || byClass.containsKey(schema.getEventClass())) {
+            throw new IllegalArgumentException("Event type is already registered: " + schema.getEventType());
+        }
+        byTypeId.put(schema.getTypeId(), schema);
+        byEventType.put(schema.getEventType(), schema);
+        byClass.put(schema.getEventClass(), schema);
+        schemas.add(schema);
+        return this;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <E extends DomainEvent> EventSchema<E> schemaFor(E event) {
+        EventSchema<?> schema = byClass.get(event.getClass());
+        if (schema == null) {
+            throw new IllegalArgumentException("Unsupported event type: " + event.getEventType());
+        }
+        return (EventSchema<E>) schema;
+    }
+    
+    public EventSchema<?> schemaFor(int typeId) {
+        EventSchema<?> schema = byTypeId.get(typeId);
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown event type id: " + typeId);
+        }
+        return schema;
+    }
+    
+    public EventSchema<?> schemaFor(String eventType) {
+        EventSchema<?> schema = byEventType.get(eventType);
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown event type: " + eventType);
+        }
+        return schema;
+    }
+    
+    public Collection<EventSchema<?>> getSchemas() {
+        return Collections.unmodifiableList(schemas);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.eventsourcing.codec;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Supplies the payload fields of one event, in the order the schema wrote them.
+ */
+public interface FieldReader {
+    
+    String readString(String name);
+    
+    long readLong(String name);
+    
+    BigDecimal readAmount(String name);
+    
+    /**
+     * Reads a non-null amount as an unscaled value at {@code scale}.
+     *
+     * @throws IllegalArgumentException if the amount is {@code null} or cannot be represented
+     *                                  exactly at that scale in a long
+     */
+    default long readAmount(String name, int scale) {
+        BigDecimal value = readAmount(name);
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is null");
+        }
+        try {
+            return value.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(name + " cannot be held at scale " + scale + ": " + value, e);
+        }
+    }
+}
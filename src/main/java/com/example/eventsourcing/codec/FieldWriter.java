@@ -0,0 +1,36 @@
+package com.example.eventsourcing.codec;
+
+import java.math.BigDecimal;
+
+/**
+ * Receives the payload fields of one event. Binary codecs ignore the names and rely on
+ * the order, so a schema must always write its fields in the same order.
+ */
+public interface FieldWriter {
+    
+    void writeString(String name, String value);
+    
+    /**
+     * Writes a string that is usually unique to its event, such as a description or a
+     * transaction id. Codecs that share repeated strings between events store it with the
+     * event instead. It is read back with {@link FieldReader#readString(String)}.
+     */
+    default void writeText(String name, String value) {
+        writeString(name, value);
+    }
+    
+    void writeLong(String name, long value);
+    
+    /**
+     * Writes a monetary amount, which may be {@code null}. The unscaled value must fit in a long.
+     */
+    void writeAmount(String name, BigDecimal value);
+    
+    /**
+     * Writes the amount {@code unscaledValue * 10^-scale}, encoded exactly as
+     * {@link #writeAmount(String, BigDecimal)} would encode it.
+     */
+    default void writeAmount(String name, long unscaledValue, int scale) {
+        writeAmount(name, BigDecimal.valueOf(unscaledValue, scale));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.eventsourcing.codec;
+
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventSerializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * JSON encoding of events described by an {@link EventTypeRegistry}, for exchanging events
+ * with other systems. Events are written as one object with the header fields, the schema
+ * version and a {@code data} object holding the payload; amounts are written as strings so
+ * that no precision is lost.
+ */
+public class JsonEventCodec implements EventSerializer {
+    
+    private final EventTypeRegistry registry;
+    private final ObjectMapper mapper;
+    
+    public JsonEventCodec(EventTypeRegistry registry) {
+        this(registry, new ObjectMapper());
+    }
+    
+    public JsonEventCodec(EventTypeRegistry registry, ObjectMapper mapper) {
+        this.registry = registry;
+        this.mapper = mapper;
+    }
+    
+    @Override
+    public byte[] serialize(DomainEvent event) {
+        try {
+            return mapper.writeValueAsBytes(toJson(event));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public DomainEvent deserialize(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        try {
+            return fromJson(mapper.readTree(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    public ObjectNode toJson(DomainEvent event) {
+        EventSchema<DomainEvent> schema = registry.schemaFor(event);
+        ObjectNode node = mapper.createObjectNode();
+        node.put("eventType", schema.getEventType());
+        node.put("schemaVersion", schema.getVersion());
+        node.put("eventId", event.getEventId().toString());
+        node.put("aggregateId", event.getAggregateId());
+        node.put("aggregateVersion", event.getAggregateVersion());
+        node.put("occurredAt", event.getOccurredAt().toString());
+        node.put("sequenceNumber", event.getSequenceNumber());
+        schema.write(event, new Output(node.putObject("data")));
+        return node;
+    }
+    
+    public DomainEvent fromJson(JsonNode node) {
+        EventSchema<?> schema = registry.schemaFor(node.path("eventType").asText());
+        EventHeader header = new EventHeader(
+            UUID.fromString(node.path("eventId").asText()),
+            node.path("aggregateId").asText(null),
+            node.path("aggregateVersion").asLong(),
+            Instant.parse(node.path("occurredAt").asText()),
+            node.path("sequenceNumber").asLong());
+        return schema.read(header, new Input(node.path("data")), node.path("schemaVersion").asInt(1));
+    }
+    
+    private static final class Output implements FieldWriter {
+        private final ObjectNode data;
+        
+        Output(ObjectNode data) {
+            this.data = data;
+        }
+        
+        @Override
+        public void writeString(String name, String value) {
+            data.put(name, value);
+        }
+        
+        @Override
+        public void writeLong(String name, long value) {
+            data.put(name, value);
+        }
+        
+        @Override
+        public void writeAmount(String name, BigDecimal value) {
+            data.put(name, value == null ? null : value.toPlainString());
+        }
+    }
+    
+    private static final class Input implements FieldReader {
+        private final JsonNode data;
+        
+        Input(JsonNode data) {
+            this.data = data;
+        }
+        
+        @Override
+        public String readString(String name) {
+            JsonNode value = data.get(name);
+            return value == null || value.isNull() ? null : value.asText();
+        }
+        
+        @Override
+        public long readLong(String name) {
+            return data.path(name).asLong();
+        }
+        
+        @Override
+        public BigDecimal readAmount(String name) {
+            String value = readString(name);
+            return value == null ? null : new BigDecimal(value);
+        }
+    }
+}
@@ -3,19 +3,24 @@ package com.example.eventsourcing.core;
 import java.time.Instant;
 import java.util.UUID;
 
+/**
+ * Base class for events. The occurrence time is held as epoch microseconds, as read from
+ * the aggregate's {@link EventClock}; {@link #getOccurredAt()} converts it on each call.
+ */
 public abstract class AbstractDomainEvent implements DomainEvent {
     
     private final UUID eventId;
     private final String aggregateId;
     private final long aggregateVersion;
-    private final Instant occurredAt;
+    private final long occurredAtMicros;
     private final long sequenceNumber;
     
-    protected AbstractDomainEvent(String aggregateId, long aggregateVersion, long sequenceNumber) {
-        this.eventId = UUID.randomUUID();
+    protected AbstractDomainEvent(UUID eventId, String aggregateId, long aggregateVersion,
+                                 long occurredAtMicros, long sequenceNumber) {
+        this.eventId = eventId;
         this.aggregateId = aggregateId;
         this.aggregateVersion = aggregateVersion;
-        this.occurredAt = Instant.now();
+        this.occurredAtMicros = occurredAtMicros;
         this.sequenceNumber = sequenceNumber;
     }
     
@@ -24,10 +29,18 @@ public abstract class AbstractDomainEvent implements DomainEvent {
         this.eventId = eventId;
         this.aggregateId = aggregateId;
         this.aggregateVersion = aggregateVersion;
-        this.occurredAt = occurredAt;
+        this.occurredAtMicros = EventClock.toMicros(occurredAt);
         this.sequenceNumber = sequenceNumber;
     }
     
+    /**
+     * Returns the canonical instance of a value that repeats across events, from
+     * {@link StringDictionary#shared()}, so that each distinct value is held once.
+     */
+    protected static String intern(String value) {
+        return StringDictionary.shared().intern(value);
+    }
+    
     @Override
     public UUID getEventId() {
         return eventId;
@@ -45,7 +58,12 @@ public abstract class AbstractDomainEvent implements DomainEvent {
     
     @Override
     public Instant getOccurredAt() {
-        return occurredAt;
+        return EventClock.toInstant(occurredAtMicros);
+    }
+    
+    @Override
+    public long getOccurredAtMicros() {
+        return occurredAtMicros;
     }
     
     @Override
@@ -56,7 +74,7 @@ public abstract class AbstractDomainEvent implements DomainEvent {
     @Override
     public String toString() {
         return String.format("%s{eventId=%s, aggregateId='%s', version=%d, occurredAt=%s, sequence=%d}",
-                getEventType(), eventId, aggregateId, aggregateVersion, occurredAt, sequenceNumber);
+                getEventType(), eventId, aggregateId, aggregateVersion, getOccurredAt(), sequenceNumber);
     }
     
     @Override
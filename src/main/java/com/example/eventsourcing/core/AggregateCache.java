@@ -0,0 +1,164 @@
+package com.example.eventsourcing.core;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded least-recently-used cache of hydrated aggregate state, held as immutable
+ * snapshots so callers never share a mutable aggregate. Entries are softly referenced
+ * and are dropped by the garbage collector under memory pressure.
+ * <p>
+ * Each entry also records the version of the aggregate's latest stored snapshot, which
+ * is usually older than the cached state, so that a {@link SnapshotPolicy} can measure
+ * from the right base.
+ */
+public class AggregateCache<S> {
+    
+    public static final long UNKNOWN_VERSION = -1;
+    
+    private final int capacity;
+    private final LinkedHashMap<String, SoftReference<CachedState<S>>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    public AggregateCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SoftReference<CachedState<S>>> eldest) {
+                if (size() > AggregateCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * @return the cached state, or {@code null} if it is absent or was reclaimed
+     */
+    public Snapshot<S> get(String aggregateId) {
+        CachedState<S> entry;
+        synchronized (entries) {
+            entry = entry(aggregateId);
+        }
+        (entry == null ? misses : hits).increment();
+        return entry == null ? null : entry.state;
+    }
+    
+    /**
+     * Returns the version of the aggregate's latest stored snapshot, as last recorded with
+     * its cached state, without counting as a hit or a miss.
+     *
+     * @return the version, 0 if no snapshot was stored, or {@link #UNKNOWN_VERSION} if the
+     *         aggregate is not cached
+     */
+    public long getSnapshotVersion(String aggregateId) {
+        synchronized (entries) {
+            CachedState<S> entry = entry(aggregateId);
+            return entry == null ? UNKNOWN_VERSION : entry.snapshotVersion;
+        }
+    }
+    
+    private CachedState<S> entry(String aggregateId) {
+        SoftReference<CachedState<S>> reference = entries.get(aggregateId);
+        CachedState<S> entry = reference == null ? null : reference.get();
+        if (reference != null && entry == null) {
+            entries.remove(aggregateId);
+            evictions.increment();
+        }
+        return entry;
+    }
+    
+    /**
+     * Caches {@code snapshot} unless a newer version of the aggregate is already cached.
+     * The recorded snapshot version only ever moves forward.
+     *
+     * @param snapshotVersion version of the aggregate's latest stored snapshot, or 0 if
+     *                        there is none
+     */
+    public void put(Snapshot<S> snapshot, long snapshotVersion) {
+        synchronized (entries) {
+            CachedState<S> cached = entry(snapshot.getAggregateId());
+            if (cached == null) {
+                entries.put(snapshot.getAggregateId(), new SoftReference<>(new CachedState<>(snapshot, snapshotVersion)));
+            } else if (cached.state.getVersion() <= snapshot.getVersion()) {
+                entries.put(snapshot.getAggregateId(), new SoftReference<>(
+                    new CachedState<>(snapshot, Math.max(snapshotVersion, cached.snapshotVersion))));
+            }
+        }
+    }
+    
+    public void invalidate(String aggregateId) {
+        synchronized (entries) {
+            entries.remove(aggregateId);
+        }
+    }
+    
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(size, capacity, hits.sum(), misses.sum(), evictions.sum());
+    }
+    
+    private static final class CachedState<S> {
+        private final Snapshot<S> state;
+        private final long snapshotVersion;
+        
+        CachedState(Snapshot<S> state, long snapshotVersion) {
+            this.state = state;
+            this.snapshotVersion = snapshotVersion;
+        }
+    }
+    
+    public static class CacheStats {
+        private final int size;
+        private final int capacity;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        
+        public CacheStats(int size, int capacity, long hits, long misses, long evictions) {
+            this.size = size;
+            this.capacity = capacity;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+        
+        public int getSize() {
+            return size;
+        }
+        
+        public int getCapacity() {
+            return capacity;
+        }
+        
+        public long getHits() {
+            return hits;
+        }
+        
+        public long getMisses() {
+            return misses;
+        }
+        
+        public long getEvictions() {
+            return evictions;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("CacheStats{size=%d, capacity=%d, hits=%d, misses=%d, evictions=%d}",
+                    size, capacity, hits, misses, evictions);
+        }
+    }
+}
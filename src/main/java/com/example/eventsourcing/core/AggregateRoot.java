@@ -2,25 +2,59 @@ package com.example.eventsourcing.core;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Objects;
 
+/**
+ * Base class for aggregates. New events take their ids from the aggregate's
+ * {@link EventIdGenerator} and their time from its {@link EventClock}, which are
+ * {@link EventIdGenerator#timeOrdered()} and {@link EventClock#system()} unless given.
+ */
 public abstract class AggregateRoot {
     
     private final String id;
+    private final EventClock clock;
+    private final EventIdGenerator idGenerator;
     private long version;
     private final List<DomainEvent> uncommittedEvents;
     
     protected AggregateRoot(String id) {
-        this.id = id;
-        this.version = 0;
-        this.uncommittedEvents = new ArrayList<>();
+        this(id, EventClock.system(), EventIdGenerator.timeOrdered());
+    }
+    
+    protected AggregateRoot(String id, EventClock clock, EventIdGenerator idGenerator) {
+        this(id, 0, clock, idGenerator);
     }
     
     protected AggregateRoot(String id, List<DomainEvent> events) {
+        this(id, events, EventClock.system(), EventIdGenerator.timeOrdered());
+    }
+    
+    protected AggregateRoot(String id, List<DomainEvent> events, EventClock clock, EventIdGenerator idGenerator) {
+        this(id, 0, clock, idGenerator);
+        
+        replay(events);
+    }
+    
+    /**
+     * Starts from a snapshot taken at {@code version}. The subclass restores its state and
+     * then {@link #replay replays} the events recorded after the snapshot.
+     */
+    protected AggregateRoot(String id, long version) {
+        this(id, version, EventClock.system(), EventIdGenerator.timeOrdered());
+    }
+    
+    protected AggregateRoot(String id, long version, EventClock clock, EventIdGenerator idGenerator) {
         this.id = id;
-        this.version = 0;
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.idGenerator = Objects.requireNonNull(idGenerator, "idGenerator");
+        this.version = version;
         this.uncommittedEvents = new ArrayList<>();
-        
+    }
+    
+    /**
+     * Applies already committed events, for example the tail of the stream after a snapshot.
+     */
+    protected void replay(List<DomainEvent> events) {
         for (DomainEvent event : events) {
             applyEvent(event, false);
             this.version = event.getAggregateVersion();
@@ -35,6 +69,14 @@ public abstract class AggregateRoot {
         return version;
     }
     
+    protected EventClock getClock() {
+        return clock;
+    }
+    
+    protected EventIdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+    
     public List<DomainEvent> getUncommittedEvents() {
         return new ArrayList<>(uncommittedEvents);
     }
@@ -59,7 +101,7 @@ public abstract class AggregateRoot {
     protected abstract void handleEvent(DomainEvent event);
     
     protected static String generateId() {
-        return UUID.randomUUID().toString();
+        return EventIdGenerator.timeOrdered().nextId().toString();
     }
     
     @Override
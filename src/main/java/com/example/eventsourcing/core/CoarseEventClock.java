@@ -0,0 +1,60 @@
+package com.example.eventsourcing.core;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A clock that a background ticker thread refreshes from a source clock once per
+ * resolution period, so reading it is a single volatile load. Times are at most one
+ * period behind the source and never decrease. Close the clock to stop the ticker.
+ */
+public final class CoarseEventClock implements EventClock, AutoCloseable {
+    
+    private final EventClock source;
+    private final long resolutionNanos;
+    private final Thread ticker;
+    private volatile long micros;
+    private volatile boolean running = true;
+    
+    private CoarseEventClock(EventClock source, Duration resolution) {
+        if (resolution.isZero() || resolution.isNegative()) {
+            throw new IllegalArgumentException("Resolution must be positive");
+        }
+        this.source = source;
+        this.resolutionNanos = resolution.toNanos();
+        this.micros = source.currentTimeMicros();
+        this.ticker = new Thread(this::tick, "coarse-event-clock");
+        ticker.setDaemon(true);
+    }
+    
+    public static CoarseEventClock start(Duration resolution) {
+        return start(EventClock.system(), resolution);
+    }
+    
+    public static CoarseEventClock start(EventClock source, Duration resolution) {
+        CoarseEventClock clock = new CoarseEventClock(source, resolution);
+        clock.ticker.start();
+        return clock;
+    }
+    
+    @Override
+    public long currentTimeMicros() {
+        return micros;
+    }
+    
+    private void tick() {
+        while (running) {
+            LockSupport.parkNanos(resolutionNanos);
+            long now = source.currentTimeMicros();
+            if (now > micros) {
+                micros = now;
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.eventsourcing.core;
+
+public class ConcurrencyException extends RuntimeException {
+    
+    private final String aggregateId;
+    private final long expectedVersion;
+    private final long actualVersion;
+    
+    public ConcurrencyException(String aggregateId, long expectedVersion, long actualVersion) {
+        super(String.format("Concurrency conflict on aggregate %s: expected version %s, but current version is %d",
+                aggregateId, describe(expectedVersion), actualVersion));
+        this.aggregateId = aggregateId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+    
+    public ConcurrencyException(String aggregateId, String message) {
+        super(String.format("Concurrency conflict on aggregate %s: %s", aggregateId, message));
+        this.aggregateId = aggregateId;
+        this.expectedVersion = EventStore.ANY_VERSION;
+        this.actualVersion = -1;
+    }
+    
+    private static String describe(long expectedVersion) {
+        if (expectedVersion == EventStore.NO_STREAM) {
+            return "NO_STREAM";
+        }
+        return String.valueOf(expectedVersion);
+    }
+    
+    public String getAggregateId() {
+        return aggregateId;
+    }
+    
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+    
+    public long getActualVersion() {
+        return actualVersion;
+    }
+}
@@ -13,7 +13,22 @@ public interface DomainEvent {
     
     Instant getOccurredAt();
     
+    /**
+     * {@link #getOccurredAt()} in microseconds since the epoch.
+     */
+    default long getOccurredAtMicros() {
+        return EventClock.toMicros(getOccurredAt());
+    }
+    
     String getEventType();
     
     long getSequenceNumber();
+    
+    /**
+     * The business transaction this event records, if any. A store treats a second event
+     * with the same transaction id on the same aggregate as a retry of the first.
+     */
+    default String getTransactionId() {
+        return null;
+    }
 }
\ No newline at end of file
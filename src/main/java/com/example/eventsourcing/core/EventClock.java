@@ -0,0 +1,29 @@
+package com.example.eventsourcing.core;
+
+import java.time.Instant;
+
+/**
+ * Source of event and store timestamps, in microseconds since the epoch. Aggregates,
+ * repositories and event stores are given their clock when constructed, and default to
+ * {@link #system()}.
+ */
+@FunctionalInterface
+public interface EventClock {
+    
+    long currentTimeMicros();
+    
+    /**
+     * Reads the system clock on every call.
+     */
+    static EventClock system() {
+        return SystemEventClock.INSTANCE;
+    }
+    
+    static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+    
+    static Instant toInstant(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000);
+    }
+}
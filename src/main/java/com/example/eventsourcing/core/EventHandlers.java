@@ -0,0 +1,88 @@
+package com.example.eventsourcing.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Dispatch table from event classes to the handlers of an aggregate or projection.
+ * <p>
+ * Handlers are declared once per class, usually in a static field, and each event class is
+ * resolved to its handler on first use and cached in a {@link ClassValue}. Dispatching is
+ * then a class lookup and one call, with no string comparisons or casts at the call site.
+ * An event without a handler for its class or any superclass is ignored.
+ *
+ * <pre>{@code
+ * private static final EventHandlers<BankAccount> HANDLERS = EventHandlers.<BankAccount>builder()
+ *     .on(AccountOpened.class, BankAccount::handleAccountOpened)
+ *     .on(MoneyDeposited.class, BankAccount::handleMoneyDeposited)
+ *     .build();
+ * }</pre>
+ *
+ * @param <T> the type that owns the handlers
+ */
+public final class EventHandlers<T> {
+    
+    @FunctionalInterface
+    public interface Handler<T, E extends DomainEvent> {
+        void handle(T target, E event);
+    }
+    
+    private static final Handler<Object, DomainEvent> IGNORE = (target, event) -> { };
+    
+    private final Map<Class<?>, Handler<T, DomainEvent>> handlers;
+    private final ClassValue<Handler<T, DomainEvent>> resolved = new ClassValue<>() {
+        @Override
+        protected Handler<T, DomainEvent> computeValue(Class<?> eventClass) {
+            return resolve(eventClass);
+        }
+    };
+    
+    private EventHandlers(Map<Class<?>, Handler<T, DomainEvent>> handlers) {
+        this.handlers = handlers;
+    }
+    
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+    
+    /**
+     * Calls the handler registered for the event's class on {@code target}.
+     */
+    public void dispatch(T target, DomainEvent event) {
+        resolved.get(event.getClass()).handle(target, event);
+    }
+    
+    public boolean handles(Class<? extends DomainEvent> eventClass) {
+        return resolved.get(eventClass) != IGNORE;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Handler<T, DomainEvent> resolve(Class<?> eventClass) {
+        for (Class<?> type = eventClass; type != null; type = type.getSuperclass()) {
+            Handler<T, DomainEvent> handler = handlers.get(type);
+            if (handler != null) {
+                return handler;
+            }
+        }
+        return (Handler<T, DomainEvent>) (Handler<?, DomainEvent>) IGNORE;
+    }
+    
+    public static final class Builder<T> {
+        private final Map<Class<?>, Handler<T, DomainEvent>> handlers = new LinkedHashMap<>();
+        
+        private Builder() {
+        }
+        
+        @SuppressWarnings("unchecked")
+        public <E extends DomainEvent> Builder<T> on(Class<E> eventClass, Handler<? super T, ? super E> handler) {
+            if (handlers.putIfAbsent(eventClass, (Handler<T, DomainEvent>) handler) != null) {
+                throw new IllegalArgumentException("Handler already registered for " + eventClass.getName());
+            }
+            return this;
+        }
+        
+        public EventHandlers<T> build() {
+            return new EventHandlers<>(new LinkedHashMap<>(handlers));
+        }
+    }
+}
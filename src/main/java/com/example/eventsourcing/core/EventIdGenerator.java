@@ -0,0 +1,28 @@
+package com.example.eventsourcing.core;
+
+import java.util.UUID;
+
+/**
+ * Source of event and transaction ids. Aggregates and repositories are given their
+ * generator alongside their {@link EventClock}, and default to {@link #timeOrdered()}.
+ */
+@FunctionalInterface
+public interface EventIdGenerator {
+    
+    UUID nextId();
+    
+    /**
+     * UUIDv7-style ids that sort by creation time. Ids generated by one thread are strictly
+     * increasing; ids from different threads are ordered by the millisecond they were made in.
+     */
+    static EventIdGenerator timeOrdered() {
+        return TimeOrderedEventIdGenerator.INSTANCE;
+    }
+    
+    /**
+     * Version 4 random ids from {@link UUID#randomUUID()}.
+     */
+    static EventIdGenerator random() {
+        return UUID::randomUUID;
+    }
+}
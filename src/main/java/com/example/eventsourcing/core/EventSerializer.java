@@ -0,0 +1,16 @@
+package com.example.eventsourcing.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts domain events to and from their stored byte representation.
+ */
+public interface EventSerializer {
+    
+    byte[] serialize(DomainEvent event);
+    
+    /**
+     * Reads one event from the remaining bytes of {@code buffer}.
+     */
+    DomainEvent deserialize(ByteBuffer buffer);
+}
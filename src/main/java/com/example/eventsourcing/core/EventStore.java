@@ -1,23 +1,101 @@
 package com.example.eventsourcing.core;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface EventStore {
     
+    /**
+     * Expected version that skips the optimistic concurrency check.
+     */
+    long ANY_VERSION = -1L;
+    
+    /**
+     * Expected version requiring that the aggregate has no events yet.
+     * Any positive value requires the aggregate to be at exactly that version.
+     */
+    long NO_STREAM = 0L;
+    
     CompletableFuture<Void> appendEvents(String aggregateId, long expectedVersion, List<DomainEvent> events);
     
+    /**
+     * Appends to several aggregates at once: either every stream in {@code appends} is
+     * committed, as one contiguous range of global positions in the map's iteration order,
+     * or none is. Each stream's expected version is checked as in {@link #appendEvents}.
+     */
+    CompletableFuture<Void> appendEventsAtomically(Map<String, StreamAppend> appends);
+    
     CompletableFuture<List<DomainEvent>> getEvents(String aggregateId);
     
     CompletableFuture<List<DomainEvent>> getEventsFromVersion(String aggregateId, long fromVersion);
     
     CompletableFuture<List<DomainEvent>> getEventsInRange(String aggregateId, long fromVersion, long toVersion);
     
+    /**
+     * The version of the aggregate's latest event, or {@link #NO_STREAM} if it has none, so
+     * that the result can be passed back as the expected version of the next append.
+     */
     CompletableFuture<Long> getCurrentVersion(String aggregateId);
     
     CompletableFuture<List<DomainEvent>> getAllEvents();
     
+    /**
+     * Reads at most {@code maxCount} events of the global log, starting at the 0-based
+     * global position {@code fromPosition}. Positions are dense, so the event at index
+     * {@code i} of the result is at position {@code fromPosition + i}, and a result shorter
+     * than {@code maxCount} means the end of the log was reached.
+     */
+    CompletableFuture<List<DomainEvent>> readAllEvents(long fromPosition, int maxCount);
+    
+    /**
+     * Lazily streams the global log from {@code fromPosition}, reading it in pages of
+     * {@code batchSize} events so that memory use stays bounded.
+     */
+    default Stream<DomainEvent> streamAllEvents(long fromPosition, int batchSize) {
+        if (fromPosition < 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Position must not be negative and batch size must be positive");
+        }
+        Spliterator<DomainEvent> pages = new Spliterators.AbstractSpliterator<DomainEvent>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final Deque<DomainEvent> buffer = new ArrayDeque<>(batchSize);
+            private long nextPosition = fromPosition;
+            private boolean exhausted;
+            
+            @Override
+            public boolean tryAdvance(Consumer<? super DomainEvent> action) {
+                if (buffer.isEmpty() && !exhausted) {
+                    List<DomainEvent> page = readAllEvents(nextPosition, batchSize).join();
+                    buffer.addAll(page);
+                    nextPosition += page.size();
+                    exhausted = page.size() < batchSize;
+                }
+                DomainEvent next = buffer.poll();
+                if (next == null) {
+                    return false;
+                }
+                action.accept(next);
+                return true;
+            }
+        };
+        return StreamSupport.stream(pages, false);
+    }
+    
+    /**
+     * Delivers every event from the 0-based global position {@code fromPosition} onwards to
+     * {@code subscriber}: first the existing history, then new events as they are appended.
+     * The log is read in pages of at most {@code batchSize} events.
+     */
+    Subscription subscribe(long fromPosition, int batchSize, EventSubscriber subscriber);
+    
     CompletableFuture<List<DomainEvent>> getEventsFromTime(java.time.Instant fromTime);
     
     CompletableFuture<Boolean> aggregateExists(String aggregateId);
-}
\ No newline at end of file
+}
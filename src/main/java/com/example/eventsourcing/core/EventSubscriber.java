@@ -0,0 +1,19 @@
+package com.example.eventsourcing.core;
+
+/**
+ * Receives the events of a {@link Subscription} in global order, one at a time, on the
+ * subscription's delivery thread.
+ */
+public interface EventSubscriber {
+    
+    /**
+     * @param position global position of {@code event}
+     */
+    void onEvent(long position, DomainEvent event);
+    
+    /**
+     * Called once if the subscription stops because {@link #onEvent} or a read failed.
+     */
+    default void onError(Throwable error) {
+    }
+}
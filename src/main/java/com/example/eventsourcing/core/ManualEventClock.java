@@ -0,0 +1,34 @@
+package com.example.eventsourcing.core;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when told to, for deterministic tests.
+ */
+public final class ManualEventClock implements EventClock {
+    
+    private final AtomicLong micros;
+    
+    public ManualEventClock(Instant start) {
+        this.micros = new AtomicLong(EventClock.toMicros(start));
+    }
+    
+    @Override
+    public long currentTimeMicros() {
+        return micros.get();
+    }
+    
+    public Instant instant() {
+        return EventClock.toInstant(micros.get());
+    }
+    
+    public void set(Instant time) {
+        micros.set(EventClock.toMicros(time));
+    }
+    
+    public void advance(Duration duration) {
+        micros.addAndGet(duration.toNanos() / 1_000);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.eventsourcing.core;
+
+import java.time.Instant;
+
+/**
+ * The state of an aggregate as of a given version. Hydration starts from the snapshot
+ * and replays only the events after {@link #getVersion()}.
+ */
+public final class Snapshot<S> {
+    
+    private final String aggregateId;
+    private final long version;
+    private final S state;
+    private final Instant takenAt;
+    
+    /**
+     * Takes the snapshot at the current time of {@code clock}.
+     */
+    public Snapshot(String aggregateId, long version, S state, EventClock clock) {
+        this(aggregateId, version, state, EventClock.toInstant(clock.currentTimeMicros()));
+    }
+    
+    public Snapshot(String aggregateId, long version, S state, Instant takenAt) {
+        this.aggregateId = aggregateId;
+        this.version = version;
+        this.state = state;
+        this.takenAt = takenAt;
+    }
+    
+    public String getAggregateId() {
+        return aggregateId;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public S getState() {
+        return state;
+    }
+    
+    public Instant getTakenAt() {
+        return takenAt;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Snapshot{aggregateId='%s', version=%d, state=%s}", aggregateId, version, state);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.eventsourcing.core;
+
+/**
+ * Decides when an aggregate should be snapshotted.
+ */
+@FunctionalInterface
+public interface SnapshotPolicy {
+    
+    /**
+     * @param snapshotVersion version of the latest snapshot, or 0 if there is none
+     * @param currentVersion  committed version of the aggregate
+     */
+    boolean shouldSnapshot(long snapshotVersion, long currentVersion);
+    
+    /**
+     * Snapshots whenever the version crosses a multiple of {@code interval}, so a
+     * hydration never replays more than {@code interval} events past a snapshot
+     * that was taken on time.
+     */
+    static SnapshotPolicy everyNEvents(int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        return (snapshotVersion, currentVersion) -> currentVersion / interval > snapshotVersion / interval;
+    }
+    
+    static SnapshotPolicy never() {
+        return (snapshotVersion, currentVersion) -> false;
+    }
+}
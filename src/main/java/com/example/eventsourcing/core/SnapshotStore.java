@@ -0,0 +1,18 @@
+package com.example.eventsourcing.core;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps the latest snapshot of each aggregate. Snapshots are an optimization: losing
+ * one only means replaying more events.
+ */
+public interface SnapshotStore<S> {
+    
+    /**
+     * Stores {@code snapshot} unless a snapshot with a higher version is already stored.
+     */
+    CompletableFuture<Void> saveSnapshot(Snapshot<S> snapshot);
+    
+    CompletableFuture<Optional<Snapshot<S>>> getLatestSnapshot(String aggregateId);
+}
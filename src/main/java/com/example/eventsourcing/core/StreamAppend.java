@@ -0,0 +1,34 @@
+package com.example.eventsourcing.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The events to append to one aggregate's stream as part of
+ * {@link EventStore#appendEventsAtomically}, with the version the stream is expected to be at.
+ */
+public final class StreamAppend {
+    
+    private final long expectedVersion;
+    private final List<DomainEvent> events;
+    
+    public StreamAppend(long expectedVersion, List<DomainEvent> events) {
+        this.expectedVersion = expectedVersion;
+        this.events = events == null ? null : Collections.unmodifiableList(new ArrayList<>(events));
+    }
+    
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+    
+    public List<DomainEvent> getEvents() {
+        return events;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("StreamAppend{expectedVersion=%d, events=%d}",
+                expectedVersion, events == null ? 0 : events.size());
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.eventsourcing.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense int codes to strings, up to a fixed number of entries, and hands out one
+ * canonical instance per string. Events, stores and projections use it for values that
+ * repeat across many events and have few distinct values, such as account types and actor
+ * names, so that each is held once and can be compared as an int. Aggregate ids are not
+ * interned: there is one per stream, and they would fill the shared dictionary.
+ * <p>
+ * Encoding a known string and decoding never lock; adding a string takes the dictionary's
+ * lock. Entries are never removed, so once the dictionary is full, new strings are simply
+ * not encoded, without locking, and callers keep their own copy.
+ */
+public final class StringDictionary {
+    
+    public static final int NOT_ENCODED = -1;
+    
+    public static final int DEFAULT_CAPACITY = 1 << 18;
+    
+    private static final StringDictionary SHARED = new StringDictionary(DEFAULT_CAPACITY);
+    
+    private final int capacity;
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private int size;
+    private volatile boolean full;
+    
+    public StringDictionary(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Dictionary capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+    
+    /**
+     * The process-wide dictionary used by events and projections.
+     */
+    public static StringDictionary shared() {
+        return SHARED;
+    }
+    
+    /**
+     * Returns the code of {@code value}, adding it if there is room, or {@link #NOT_ENCODED}
+     * if it is {@code null} or the dictionary is full.
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NOT_ENCODED;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (full) {
+            return NOT_ENCODED;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (size == capacity) {
+                return NOT_ENCODED;
+            }
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, (int) Math.min(capacity, current.length * 2L));
+                values = current;
+            }
+            current[size] = value;
+            codes.put(value, size);
+            full = size + 1 == capacity;
+            return size++;
+        }
+    }
+    
+    /**
+     * Returns the code of {@code value} without adding it, or {@link #NOT_ENCODED}. Since
+     * entries are never removed, a string that is not encoded now was never encoded.
+     */
+    public int codeOf(String value) {
+        if (value == null) {
+            return NOT_ENCODED;
+        }
+        Integer code = codes.get(value);
+        return code == null ? NOT_ENCODED : code;
+    }
+    
+    public String decode(int code) {
+        return values[code];
+    }
+    
+    /**
+     * Returns the canonical instance of {@code value}, or {@code value} itself if it cannot
+     * be encoded.
+     */
+    public String intern(String value) {
+        int code = encode(value);
+        return code == NOT_ENCODED ? value : values[code];
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.eventsourcing.core;
+
+/**
+ * A running subscription to the global log. It first catches up on history and then
+ * delivers newly appended events as they are published.
+ */
+public interface Subscription extends AutoCloseable {
+    
+    /**
+     * The global position of the next event to deliver.
+     */
+    long getPosition();
+    
+    /**
+     * Whether the subscription has caught up with the log and is waiting for new events.
+     */
+    boolean isLive();
+    
+    boolean isClosed();
+    
+    /**
+     * Stops delivery. Events already being delivered finish first.
+     */
+    @Override
+    void close();
+}
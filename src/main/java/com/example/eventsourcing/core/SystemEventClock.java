@@ -0,0 +1,16 @@
+package com.example.eventsourcing.core;
+
+import java.time.Instant;
+
+final class SystemEventClock implements EventClock {
+    
+    static final SystemEventClock INSTANCE = new SystemEventClock();
+    
+    private SystemEventClock() {
+    }
+    
+    @Override
+    public long currentTimeMicros() {
+        return EventClock.toMicros(Instant.now());
+    }
+}
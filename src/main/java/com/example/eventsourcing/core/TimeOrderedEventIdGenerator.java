@@ -0,0 +1,53 @@
+package com.example.eventsourcing.core;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates ids in the UUIDv7 layout: a 48-bit Unix millisecond timestamp, the version and
+ * variant bits, a 26-bit counter split over {@code rand_a} and the top of {@code rand_b},
+ * and 48 random bits.
+ * <p>
+ * Each thread keeps its own last timestamp and counter, so generation takes no lock and
+ * shares no state. The counter starts at a random value below 2<sup>25</sup> each
+ * millisecond and is incremented for every further id in that millisecond. If the clock
+ * moves backwards the last timestamp is reused, and if the counter runs out the timestamp
+ * is advanced by one, so a thread's ids never decrease. The random bits keep ids from
+ * different threads in the same millisecond apart.
+ */
+final class TimeOrderedEventIdGenerator implements EventIdGenerator {
+    
+    static final TimeOrderedEventIdGenerator INSTANCE = new TimeOrderedEventIdGenerator();
+    
+    private static final int COUNTER_BITS = 26;
+    private static final long COUNTER_LIMIT = 1L << COUNTER_BITS;
+    private static final long RANDOM_MASK = (1L << 48) - 1;
+    
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+    
+    private TimeOrderedEventIdGenerator() {
+    }
+    
+    @Override
+    public UUID nextId() {
+        State state = STATE.get();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.currentTimeMillis();
+        if (now > state.lastMillis) {
+            state.lastMillis = now;
+            state.counter = random.nextLong(COUNTER_LIMIT >>> 1);
+        } else if (++state.counter >= COUNTER_LIMIT) {
+            state.lastMillis++;
+            state.counter = random.nextLong(COUNTER_LIMIT >>> 1);
+        }
+        long counter = state.counter;
+        long mostSigBits = state.lastMillis << 16 | 0x7000L | counter >>> 14;
+        long leastSigBits = 0x8000000000000000L | (counter & 0x3FFFL) << 48 | random.nextLong() & RANDOM_MASK;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+    
+    private static final class State {
+        private long lastMillis;
+        private long counter;
+    }
+}
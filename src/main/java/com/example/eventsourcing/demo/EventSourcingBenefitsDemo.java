@@ -2,16 +2,22 @@ package com.example.eventsourcing.demo;
 
 import com.example.eventsourcing.core.DomainEvent;
 import com.example.eventsourcing.core.EventStore;
+import com.example.eventsourcing.core.SnapshotPolicy;
 import com.example.eventsourcing.domain.account.BankAccount;
+import com.example.eventsourcing.domain.account.BankAccountRepository;
 import com.example.eventsourcing.projection.AccountBalanceProjection;
+import com.example.eventsourcing.projection.InMemoryCheckpointStore;
+import com.example.eventsourcing.projection.ProjectionRunner;
 import com.example.eventsourcing.projection.TransactionHistoryProjection;
 import com.example.eventsourcing.store.InMemoryEventStore;
+import com.example.eventsourcing.store.InMemorySnapshotStore;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Demonstration of the key benefits of Event Sourcing.
@@ -29,17 +35,27 @@ import java.util.concurrent.CompletableFuture;
  */
 public class EventSourcingBenefitsDemo {
     
+    private static final int READ_BATCH_SIZE = 500;
+    private static final int SNAPSHOT_INTERVAL = 100;
+    
     private final EventStore eventStore;
+    private final BankAccountRepository accountRepository;
     private final AccountBalanceProjection balanceProjection;
     private final TransactionHistoryProjection transactionProjection;
+    private final ProjectionRunner projectionRunner;
     
     /**
      * Constructor for creating a new benefits demonstration.
      */
     public EventSourcingBenefitsDemo() {
         this.eventStore = new InMemoryEventStore();
+        this.accountRepository = new BankAccountRepository(eventStore, new InMemorySnapshotStore<>(),
+            SnapshotPolicy.everyNEvents(SNAPSHOT_INTERVAL));
         this.balanceProjection = new AccountBalanceProjection("BenefitsDemoBalanceProjection");
         this.transactionProjection = new TransactionHistoryProjection("BenefitsDemoTransactionProjection");
+        this.projectionRunner = new ProjectionRunner(eventStore, new InMemoryCheckpointStore(), READ_BATCH_SIZE)
+            .register(balanceProjection)
+            .register(transactionProjection);
     }
     
     /**
@@ -391,29 +407,23 @@ public class EventSourcingBenefitsDemo {
      * Saves an account to the event store.
      */
     private void saveAccount(BankAccount account) throws Exception {
-        List<DomainEvent> uncommittedEvents = account.getUncommittedEvents();
-        if (!uncommittedEvents.isEmpty()) {
-            eventStore.appendEvents(account.getId(), -1, uncommittedEvents).get();
-            account.markEventsAsCommitted();
-        }
+        accountRepository.save(account).get();
     }
     
     /**
      * Loads all accounts from the event store.
      */
     private List<BankAccount> loadAllAccounts() throws Exception {
-        List<DomainEvent> allEvents = eventStore.getAllEvents().get();
-        
-        // Group events by aggregate ID
-        Map<String, List<DomainEvent>> eventsByAccount = new HashMap<>();
-        for (DomainEvent event : allEvents) {
-            eventsByAccount.computeIfAbsent(event.getAggregateId(), k -> new ArrayList<>()).add(event);
+        // Collect account IDs in the order the accounts were opened
+        Set<String> accountIds = new LinkedHashSet<>();
+        try (Stream<DomainEvent> allEvents = eventStore.streamAllEvents(0, READ_BATCH_SIZE)) {
+            allEvents.forEach(event -> accountIds.add(event.getAggregateId()));
         }
         
         // Create account instances
         List<BankAccount> accounts = new ArrayList<>();
-        for (Map.Entry<String, List<DomainEvent>> entry : eventsByAccount.entrySet()) {
-            accounts.add(new BankAccount(entry.getKey(), entry.getValue()));
+        for (String accountId : accountIds) {
+            accountRepository.findById(accountId).get().ifPresent(accounts::add);
         }
         
         return accounts;
@@ -423,17 +433,7 @@ public class EventSourcingBenefitsDemo {
      * Updates all projections with the latest events.
      */
     private void updateProjections() throws Exception {
-        List<DomainEvent> allEvents = eventStore.getAllEvents().get();
-        
-        // Reset projections
-        balanceProjection.reset();
-        transactionProjection.reset();
-        
-        // Replay all events
-        for (DomainEvent event : allEvents) {
-            balanceProjection.processEvent(event);
-            transactionProjection.processEvent(event);
-        }
+        projectionRunner.catchUp();
     }
     
     /**
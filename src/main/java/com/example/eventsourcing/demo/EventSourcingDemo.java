@@ -1,28 +1,45 @@
 package com.example.eventsourcing.demo;
 
 import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventIdGenerator;
 import com.example.eventsourcing.core.EventStore;
+import com.example.eventsourcing.core.SnapshotPolicy;
 import com.example.eventsourcing.domain.account.BankAccount;
+import com.example.eventsourcing.domain.account.BankAccountRepository;
 import com.example.eventsourcing.domain.account.InsufficientFundsException;
 import com.example.eventsourcing.projection.AccountBalanceProjection;
+import com.example.eventsourcing.projection.InMemoryCheckpointStore;
+import com.example.eventsourcing.projection.ProjectionRunner;
 import com.example.eventsourcing.projection.TransactionHistoryProjection;
 import com.example.eventsourcing.store.InMemoryEventStore;
+import com.example.eventsourcing.store.InMemorySnapshotStore;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public class EventSourcingDemo {
     
+    private static final int READ_BATCH_SIZE = 500;
+    private static final int SNAPSHOT_INTERVAL = 100;
+    
     private final EventStore eventStore;
+    private final BankAccountRepository accountRepository;
     private final AccountBalanceProjection balanceProjection;
     private final TransactionHistoryProjection transactionProjection;
+    private final ProjectionRunner projectionRunner;
     
     public EventSourcingDemo() {
         this.eventStore = new InMemoryEventStore();
+        this.accountRepository = new BankAccountRepository(eventStore, new InMemorySnapshotStore<>(),
+            SnapshotPolicy.everyNEvents(SNAPSHOT_INTERVAL));
         this.balanceProjection = new AccountBalanceProjection("AccountBalanceProjection");
         this.transactionProjection = new TransactionHistoryProjection("TransactionHistoryProjection");
+        this.projectionRunner = new ProjectionRunner(eventStore, new InMemoryCheckpointStore(), READ_BATCH_SIZE)
+            .register(balanceProjection)
+            .register(transactionProjection);
     }
     
     public void runDemo() {
@@ -192,13 +209,12 @@ public class EventSourcingDemo {
         // Single currency system (INR), no currency check required
 
         // Use a single transaction id for correlation across withdraw and deposit
-        String txId = UUID.randomUUID().toString();
+        String txId = EventIdGenerator.timeOrdered().nextId().toString();
         try {
             from.withdraw(amount, "Transfer out: " + desc, by, txId);
             to.deposit(amount, "Transfer in: " + desc, by, txId);
-            // Save both; if second save fails due to concurrency, caller can retry from latest events
-            saveAccount(from);
-            saveAccount(to);
+            // Both sides are committed together or not at all
+            accountRepository.saveAll(List.of(from, to)).get();
             updateProjections();
             System.out.println("Transfer completed. Transaction ID: " + txId);
         } catch (InsufficientFundsException e) {
@@ -260,13 +276,16 @@ public class EventSourcingDemo {
     }
 
     private void interactiveListAllEvents() throws Exception {
-        List<DomainEvent> all = eventStore.getAllEvents().get();
-        if (all.isEmpty()) {
+        long position = 0;
+        List<DomainEvent> page;
+        do {
+            page = eventStore.readAllEvents(position, READ_BATCH_SIZE).get();
+            for (DomainEvent event : page) {
+                System.out.println(++position + ". " + event);
+            }
+        } while (page.size() == READ_BATCH_SIZE);
+        if (position == 0) {
             System.out.println("No events recorded");
-            return;
-        }
-        for (int i = 0; i < all.size(); i++) {
-            System.out.println((i + 1) + ". " + all.get(i));
         }
     }
 
@@ -436,9 +455,9 @@ public class EventSourcingDemo {
         if (!accounts.isEmpty()) {
             String accountId = accounts.get(0).getId();
             List<TransactionHistoryProjection.TransactionRecord> transactions = 
-                transactionProjection.getTransactionsForAccount(accountId);
+                transactionProjection.getLatestTransactions(accountId, 10);
             
-            System.out.println("\nRecent transactions for " + accountId + ":");
+            System.out.println("\nRecent transactions for " + accountId + " (newest first):");
             transactions.forEach(transaction -> {
                 System.out.println("  " + transaction);
             });
@@ -483,6 +502,8 @@ public class EventSourcingDemo {
         stats.getEventsPerAggregate().forEach((aggregateId, eventCount) -> {
             System.out.println("  " + aggregateId + ": " + eventCount + " events");
         });
+        System.out.println("Operation latency: " + inMemoryStore.getLatencyStats());
+        System.out.println("Account cache: " + accountRepository.getCacheStats());
     }
     
     private void demonstrateTemporalQueries() throws Exception {
@@ -514,47 +535,30 @@ public class EventSourcingDemo {
     }
     
     private void saveAccount(BankAccount account) throws Exception {
-        List<DomainEvent> uncommittedEvents = account.getUncommittedEvents();
-        if (!uncommittedEvents.isEmpty()) {
-            eventStore.appendEvents(account.getId(), -1, uncommittedEvents).get();
-            account.markEventsAsCommitted();
-        }
+        accountRepository.save(account).get();
     }
     
     private BankAccount loadAccount(String accountId) throws Exception {
-        List<DomainEvent> events = eventStore.getEvents(accountId).get();
-        if (events.isEmpty()) {
-            throw new IllegalArgumentException("Account not found: " + accountId);
-        }
-        return new BankAccount(accountId, events);
+        return accountRepository.findById(accountId).get()
+            .orElseThrow(() -> new IllegalArgumentException("Account not found: " + accountId));
     }
     
     private List<BankAccount> loadAllAccounts() throws Exception {
-        List<DomainEvent> allEvents = eventStore.getAllEvents().get();
-        
-        Map<String, List<DomainEvent>> eventsByAccount = new HashMap<>();
-        for (DomainEvent event : allEvents) {
-            eventsByAccount.computeIfAbsent(event.getAggregateId(), k -> new ArrayList<>()).add(event);
+        Set<String> accountIds = new LinkedHashSet<>();
+        try (Stream<DomainEvent> allEvents = eventStore.streamAllEvents(0, READ_BATCH_SIZE)) {
+            allEvents.forEach(event -> accountIds.add(event.getAggregateId()));
         }
         
         List<BankAccount> accounts = new ArrayList<>();
-        for (Map.Entry<String, List<DomainEvent>> entry : eventsByAccount.entrySet()) {
-            accounts.add(new BankAccount(entry.getKey(), entry.getValue()));
+        for (String accountId : accountIds) {
+            accountRepository.findById(accountId).get().ifPresent(accounts::add);
         }
         
         return accounts;
     }
     
     private void updateProjections() throws Exception {
-        List<DomainEvent> allEvents = eventStore.getAllEvents().get();
-        
-        balanceProjection.reset();
-        transactionProjection.reset();
-        
-        for (DomainEvent event : allEvents) {
-            balanceProjection.processEvent(event);
-            transactionProjection.processEvent(event);
-        }
+        projectionRunner.catchUp();
     }
     
     public static void main(String[] args) {
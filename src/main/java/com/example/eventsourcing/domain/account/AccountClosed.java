@@ -6,33 +6,40 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
 
+/**
+ * Amounts are held in {@link Money} minor units.
+ */
 public class AccountClosed extends AbstractDomainEvent {
     
-    private final BigDecimal finalBalance;
+    private final long finalBalance;
     private final String reason;
     private final String closedBy;
     private final String transferAccountId;
     
-    public AccountClosed(String aggregateId, long aggregateVersion, long sequenceNumber,
-                        BigDecimal finalBalance, String reason, String closedBy, String transferAccountId) {
-        super(aggregateId, aggregateVersion, sequenceNumber);
+    public AccountClosed(UUID eventId, String aggregateId, long aggregateVersion, long occurredAtMicros, long sequenceNumber,
+                        long finalBalance, String reason, String closedBy, String transferAccountId) {
+        super(eventId, aggregateId, aggregateVersion, occurredAtMicros, sequenceNumber);
         this.finalBalance = finalBalance;
         this.reason = reason;
-        this.closedBy = closedBy;
+        this.closedBy = intern(closedBy);
         this.transferAccountId = transferAccountId;
     }
     
     public AccountClosed(UUID eventId, String aggregateId, long aggregateVersion, 
                         Instant occurredAt, long sequenceNumber,
-                        BigDecimal finalBalance, String reason, String closedBy, String transferAccountId) {
+                        long finalBalance, String reason, String closedBy, String transferAccountId) {
         super(eventId, aggregateId, aggregateVersion, occurredAt, sequenceNumber);
         this.finalBalance = finalBalance;
         this.reason = reason;
-        this.closedBy = closedBy;
+        this.closedBy = intern(closedBy);
         this.transferAccountId = transferAccountId;
     }
     
     public BigDecimal getFinalBalance() {
+        return Money.toBigDecimal(finalBalance);
+    }
+    
+    public long getFinalBalanceMinorUnits() {
         return finalBalance;
     }
     
@@ -56,6 +63,6 @@ public class AccountClosed extends AbstractDomainEvent {
     @Override
     public String toString() {
         return String.format("AccountClosed{accountId='%s', finalBalance=%s, reason='%s', closedBy='%s', transferAccountId='%s', version=%d}",
-                getAggregateId(), finalBalance, reason, closedBy, transferAccountId, getAggregateVersion());
+                getAggregateId(), getFinalBalance(), reason, closedBy, transferAccountId, getAggregateVersion());
     }
 }
\ No newline at end of file
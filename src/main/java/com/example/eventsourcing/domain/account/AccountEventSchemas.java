@@ -0,0 +1,81 @@
+package com.example.eventsourcing.domain.account;
+
+import com.example.eventsourcing.codec.EventSchema;
+import com.example.eventsourcing.codec.EventTypeRegistry;
+
+/**
+ * Wire schemas for the account events. Type ids and field order are part of the stored
+ * format: add new fields at the end under a new schema version and never reuse a type id.
+ * Fields that are unique to each event are written as text, so they do not take shared
+ * dictionary entries.
+ */
+public final class AccountEventSchemas {
+    
+    public static final EventSchema<AccountOpened> ACCOUNT_OPENED = EventSchema.of(
+        1, "AccountOpened", AccountOpened.class, 1,
+        (event, out) -> {
+            out.writeString("accountHolderName", event.getAccountHolderName());
+            out.writeString("accountType", event.getAccountType());
+            out.writeAmount("initialBalance", event.getInitialBalanceMinorUnits(), Money.SCALE);
+        },
+        (header, in, version) -> new AccountOpened(header.getEventId(), header.getAggregateId(),
+            header.getAggregateVersion(), header.getOccurredAt(), header.getSequenceNumber(),
+            in.readString("accountHolderName"), in.readString("accountType"),
+            in.readAmount("initialBalance", Money.SCALE)));
+    
+    public static final EventSchema<MoneyDeposited> MONEY_DEPOSITED = EventSchema.of(
+        2, "MoneyDeposited", MoneyDeposited.class, 1,
+        (event, out) -> {
+            out.writeAmount("amount", event.getAmountMinorUnits(), Money.SCALE);
+            out.writeAmount("newBalance", event.getNewBalanceMinorUnits(), Money.SCALE);
+            out.writeText("transactionId", event.getTransactionId());
+            out.writeText("description", event.getDescription());
+            out.writeString("depositedBy", event.getDepositedBy());
+        },
+        (header, in, version) -> new MoneyDeposited(header.getEventId(), header.getAggregateId(),
+            header.getAggregateVersion(), header.getOccurredAt(), header.getSequenceNumber(),
+            in.readAmount("amount", Money.SCALE), in.readAmount("newBalance", Money.SCALE),
+            in.readString("transactionId"), in.readString("description"), in.readString("depositedBy")));
+    
+    public static final EventSchema<MoneyWithdrawn> MONEY_WITHDRAWN = EventSchema.of(
+        3, "MoneyWithdrawn", MoneyWithdrawn.class, 1,
+        (event, out) -> {
+            out.writeAmount("amount", event.getAmountMinorUnits(), Money.SCALE);
+            out.writeAmount("newBalance", event.getNewBalanceMinorUnits(), Money.SCALE);
+            out.writeText("transactionId", event.getTransactionId());
+            out.writeText("description", event.getDescription());
+            out.writeString("withdrawnBy", event.getWithdrawnBy());
+        },
+        (header, in, version) -> new MoneyWithdrawn(header.getEventId(), header.getAggregateId(),
+            header.getAggregateVersion(), header.getOccurredAt(), header.getSequenceNumber(),
+            in.readAmount("amount", Money.SCALE), in.readAmount("newBalance", Money.SCALE),
+            in.readString("transactionId"), in.readString("description"), in.readString("withdrawnBy")));
+    
+    public static final EventSchema<AccountClosed> ACCOUNT_CLOSED = EventSchema.of(
+        4, "AccountClosed", AccountClosed.class, 1,
+        (event, out) -> {
+            out.writeAmount("finalBalance", event.getFinalBalanceMinorUnits(), Money.SCALE);
+            out.writeText("reason", event.getReason());
+            out.writeString("closedBy", event.getClosedBy());
+            out.writeString("transferAccountId", event.getTransferAccountId());
+        },
+        (header, in, version) -> new AccountClosed(header.getEventId(), header.getAggregateId(),
+            header.getAggregateVersion(), header.getOccurredAt(), header.getSequenceNumber(),
+            in.readAmount("finalBalance", Money.SCALE), in.readString("reason"), in.readString("closedBy"),
+            in.readString("transferAccountId")));
+    
+    private AccountEventSchemas() {
+    }
+    
+    public static EventTypeRegistry register(EventTypeRegistry registry) {
+        return registry
+            .register(ACCOUNT_OPENED)
+            .register(MONEY_DEPOSITED)
+            .register(MONEY_WITHDRAWN)
+            .register(ACCOUNT_CLOSED);
+    }
+    
+    public static EventTypeRegistry registry() {
+        return register(new EventTypeRegistry());
+    }
+}
@@ -6,29 +6,32 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
 
+/**
+ * Amounts are held in {@link Money} minor units.
+ */
 public class AccountOpened extends AbstractDomainEvent {
     
     private final String accountHolderName;
     private final String accountType;
-    private final BigDecimal initialBalance;
+    private final long initialBalance;
     
     
-    public AccountOpened(String aggregateId, long aggregateVersion, long sequenceNumber,
+    public AccountOpened(UUID eventId, String aggregateId, long aggregateVersion, long occurredAtMicros, long sequenceNumber,
                         String accountHolderName, String accountType,
-                        BigDecimal initialBalance) {
-        super(aggregateId, aggregateVersion, sequenceNumber);
-        this.accountHolderName = accountHolderName;
-        this.accountType = accountType;
+                        long initialBalance) {
+        super(eventId, aggregateId, aggregateVersion, occurredAtMicros, sequenceNumber);
+        this.accountHolderName = intern(accountHolderName);
+        this.accountType = intern(accountType);
         this.initialBalance = initialBalance;
     }
     
     public AccountOpened(UUID eventId, String aggregateId, long aggregateVersion,
                         Instant occurredAt, long sequenceNumber,
                         String accountHolderName, String accountType,
-                        BigDecimal initialBalance) {
+                        long initialBalance) {
         super(eventId, aggregateId, aggregateVersion, occurredAt, sequenceNumber);
-        this.accountHolderName = accountHolderName;
-        this.accountType = accountType;
+        this.accountHolderName = intern(accountHolderName);
+        this.accountType = intern(accountType);
         this.initialBalance = initialBalance;
     }
     
@@ -41,6 +44,10 @@ public class AccountOpened extends AbstractDomainEvent {
     }
     
     public BigDecimal getInitialBalance() {
+        return Money.toBigDecimal(initialBalance);
+    }
+    
+    public long getInitialBalanceMinorUnits() {
         return initialBalance;
     }
     
@@ -53,6 +60,6 @@ public class AccountOpened extends AbstractDomainEvent {
     @Override
     public String toString() {
     return String.format("AccountOpened{accountId='%s', holder='%s', type='%s', balance=%s, version=%d}",
-        getAggregateId(), accountHolderName, accountType, initialBalance, getAggregateVersion());
+        getAggregateId(), accountHolderName, accountType, getInitialBalance(), getAggregateVersion());
     }
 }
\ No newline at end of file
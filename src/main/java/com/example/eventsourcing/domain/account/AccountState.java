@@ -0,0 +1,54 @@
+package com.example.eventsourcing.domain.account;
+
+import java.math.BigDecimal;
+
+/**
+ * Snapshot state of a {@link BankAccount}. The balance is held in {@link Money} minor units.
+ */
+public final class AccountState {
+    
+    private final String accountHolderName;
+    private final String accountType;
+    private final long balance;
+    private final boolean closed;
+    private final String closedReason;
+    
+    public AccountState(String accountHolderName, String accountType, long balance,
+                        boolean closed, String closedReason) {
+        this.accountHolderName = accountHolderName;
+        this.accountType = accountType;
+        this.balance = balance;
+        this.closed = closed;
+        this.closedReason = closedReason;
+    }
+    
+    public String getAccountHolderName() {
+        return accountHolderName;
+    }
+    
+    public String getAccountType() {
+        return accountType;
+    }
+    
+    public BigDecimal getBalance() {
+        return Money.toBigDecimal(balance);
+    }
+    
+    public long getBalanceMinorUnits() {
+        return balance;
+    }
+    
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    public String getClosedReason() {
+        return closedReason;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("AccountState{holder='%s', type='%s', balance=%s, closed=%s}",
+                accountHolderName, accountType, getBalance(), closed);
+    }
+}
@@ -2,44 +2,89 @@ package com.example.eventsourcing.domain.account;
 
 import com.example.eventsourcing.core.AggregateRoot;
 import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventClock;
+import com.example.eventsourcing.core.EventHandlers;
+import com.example.eventsourcing.core.EventIdGenerator;
+import com.example.eventsourcing.core.Snapshot;
 
 import java.math.BigDecimal;
 import java.util.List;
-import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class BankAccount extends AggregateRoot {
     
+    private static final EventHandlers<BankAccount> HANDLERS = EventHandlers.<BankAccount>builder()
+        .on(AccountOpened.class, BankAccount::handleAccountOpened)
+        .on(MoneyDeposited.class, BankAccount::handleMoneyDeposited)
+        .on(MoneyWithdrawn.class, BankAccount::handleMoneyWithdrawn)
+        .on(AccountClosed.class, BankAccount::handleAccountClosed)
+        .build();
+    
     private String accountHolderName;
     private String accountType;
-    private BigDecimal balance;
+    private long balance;
     private boolean isClosed;
     private String closedReason;
     private static final AtomicLong ID_SEQ = new AtomicLong(0);
     
     public BankAccount(String accountHolderName, String accountType,
                       BigDecimal initialBalance) {
-        super(generateSequentialId());
+        this(accountHolderName, accountType, initialBalance, EventClock.system(), EventIdGenerator.timeOrdered());
+    }
+    
+    /**
+     * Opens an account whose events are stamped with the time of {@code clock} and whose
+     * event and transaction ids come from {@code idGenerator}.
+     */
+    public BankAccount(String accountHolderName, String accountType,
+                      BigDecimal initialBalance, EventClock clock, EventIdGenerator idGenerator) {
+        super(generateSequentialId(), clock, idGenerator);
         this.accountHolderName = accountHolderName;
         this.accountType = accountType;
-        this.balance = initialBalance;
+        this.balance = Money.toMinorUnits(initialBalance);
         this.isClosed = false;
         this.closedReason = null;
         
         AccountOpened event = new AccountOpened(
+            idGenerator.nextId(),
             getId(), 
             1,
+            clock.currentTimeMicros(),
             1,
             accountHolderName,
             accountType,
-            initialBalance
+            balance
         );
         
         applyNewEvent(event);
     }
     
     public BankAccount(String accountId, List<DomainEvent> events) {
-        super(accountId, events);
+        this(accountId, events, EventClock.system(), EventIdGenerator.timeOrdered());
+    }
+    
+    public BankAccount(String accountId, List<DomainEvent> events, EventClock clock, EventIdGenerator idGenerator) {
+        super(accountId, events, clock, idGenerator);
+    }
+    
+    /**
+     * Restores the account from {@code snapshot} and applies the events recorded after it.
+     */
+    public BankAccount(Snapshot<AccountState> snapshot, List<DomainEvent> tail) {
+        this(snapshot, tail, EventClock.system(), EventIdGenerator.timeOrdered());
+    }
+    
+    public BankAccount(Snapshot<AccountState> snapshot, List<DomainEvent> tail, EventClock clock,
+                       EventIdGenerator idGenerator) {
+        super(snapshot.getAggregateId(), snapshot.getVersion(), clock, idGenerator);
+        AccountState state = snapshot.getState();
+        this.accountHolderName = state.getAccountHolderName();
+        this.accountType = state.getAccountType();
+        this.balance = state.getBalanceMinorUnits();
+        this.isClosed = state.isClosed();
+        this.closedReason = state.getClosedReason();
+        
+        replay(tail);
     }
     
     public String deposit(BigDecimal amount, String description, String depositedBy) {
@@ -62,16 +107,9 @@ public class BankAccount extends AggregateRoot {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
         
-        if (amount.compareTo(balance) > 0) {
-            throw new InsufficientFundsException(
-                getId(), 
-                amount.doubleValue(), 
-                balance.doubleValue()
-            );
-        }
         return withdraw(amount, description, withdrawnBy, null);
     }
-
+    
     /**
      * Overload allowing an external transactionId to be provided for correlation (e.g., transfers).
      */
@@ -82,14 +120,16 @@ public class BankAccount extends AggregateRoot {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Deposit amount must be positive");
         }
+        long units = Money.toMinorUnits(amount);
         String txId = (transactionId == null || transactionId.isEmpty()) ? generateTransactionId() : transactionId;
-        BigDecimal newBalance = balance.add(amount);
         MoneyDeposited event = new MoneyDeposited(
+            getIdGenerator().nextId(),
             getId(),
             getVersion() + 1,
+            getClock().currentTimeMicros(),
             getVersion() + 1,
-            amount,
-            newBalance,
+            units,
+            Money.add(balance, units),
             txId,
             description,
             depositedBy
@@ -97,7 +137,7 @@ public class BankAccount extends AggregateRoot {
         applyNewEvent(event);
         return txId;
     }
-
+    
     /**
      * Overload allowing an external transactionId to be provided for correlation (e.g., transfers).
      */
@@ -108,21 +148,23 @@ public class BankAccount extends AggregateRoot {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
-        if (amount.compareTo(balance) > 0) {
+        long units = Money.toMinorUnits(amount);
+        if (units > balance) {
             throw new InsufficientFundsException(
                 getId(),
                 amount.doubleValue(),
-                balance.doubleValue()
+                Money.toDouble(balance)
             );
         }
         String txId = (transactionId == null || transactionId.isEmpty()) ? generateTransactionId() : transactionId;
-        BigDecimal newBalance = balance.subtract(amount);
         MoneyWithdrawn event = new MoneyWithdrawn(
+            getIdGenerator().nextId(),
             getId(),
             getVersion() + 1,
+            getClock().currentTimeMicros(),
             getVersion() + 1,
-            amount,
-            newBalance,
+            units,
+            Money.subtract(balance, units),
             txId,
             description,
             withdrawnBy
@@ -137,8 +179,10 @@ public class BankAccount extends AggregateRoot {
         }
         
         AccountClosed event = new AccountClosed(
+            getIdGenerator().nextId(),
             getId(),
             getVersion() + 1,
+            getClock().currentTimeMicros(),
             getVersion() + 1,
             balance,
             reason,
@@ -150,7 +194,7 @@ public class BankAccount extends AggregateRoot {
     }
     
     public BigDecimal getBalance() {
-        return balance;
+        return Money.toBigDecimal(balance);
     }
     
     public String getAccountHolderName() {
@@ -171,52 +215,50 @@ public class BankAccount extends AggregateRoot {
         return closedReason;
     }
     
+    /**
+     * Captures the committed state of the account.
+     *
+     * @throws IllegalStateException if the account has uncommitted events
+     */
+    public Snapshot<AccountState> toSnapshot() {
+        if (!getUncommittedEvents().isEmpty()) {
+            throw new IllegalStateException("Cannot snapshot account " + getId() + " with uncommitted events");
+        }
+        return new Snapshot<>(getId(), getVersion(),
+            new AccountState(accountHolderName, accountType, balance, isClosed, closedReason), getClock());
+    }
+    
     @Override
     protected void handleEvent(DomainEvent event) {
-        switch (event.getEventType()) {
-            case "AccountOpened":
-                handleAccountOpened((AccountOpened) event);
-                break;
-            case "MoneyDeposited":
-                handleMoneyDeposited((MoneyDeposited) event);
-                break;
-            case "MoneyWithdrawn":
-                handleMoneyWithdrawn((MoneyWithdrawn) event);
-                break;
-            case "AccountClosed":
-                handleAccountClosed((AccountClosed) event);
-                break;
-            default:
-                break;
-        }
+        HANDLERS.dispatch(this, event);
     }
     
     private void handleAccountOpened(AccountOpened event) {
         this.accountHolderName = event.getAccountHolderName();
         this.accountType = event.getAccountType();
-        this.balance = event.getInitialBalance();
+        this.balance = event.getInitialBalanceMinorUnits();
         this.isClosed = false;
         this.closedReason = null;
     }
     
     private void handleMoneyDeposited(MoneyDeposited event) {
-        this.balance = event.getNewBalance();
+        this.balance = event.getNewBalanceMinorUnits();
     }
     
     private void handleMoneyWithdrawn(MoneyWithdrawn event) {
-        this.balance = event.getNewBalance();
+        this.balance = event.getNewBalanceMinorUnits();
     }
     
     private void handleAccountClosed(AccountClosed event) {
         this.isClosed = true;
         this.closedReason = event.getReason();
-        this.balance = event.getFinalBalance();
+        this.balance = event.getFinalBalanceMinorUnits();
     }
     
     private String generateTransactionId() {
-        return UUID.randomUUID().toString();
+        return getIdGenerator().nextId().toString();
     }
-
+    
     private static String generateSequentialId() {
         return String.valueOf(ID_SEQ.incrementAndGet());
     }
@@ -224,6 +266,6 @@ public class BankAccount extends AggregateRoot {
     @Override
     public String toString() {
     return String.format("BankAccount{id='%s', holder='%s', type='%s', balance=%s, closed=%s, version=%d}",
-        getId(), accountHolderName, accountType, balance, isClosed, getVersion());
+        getId(), accountHolderName, accountType, getBalance(), isClosed, getVersion());
     }
 }
\ No newline at end of file
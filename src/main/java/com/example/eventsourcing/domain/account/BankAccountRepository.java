@@ -0,0 +1,201 @@
+package com.example.eventsourcing.domain.account;
+
+import com.example.eventsourcing.core.AggregateCache;
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventClock;
+import com.example.eventsourcing.core.EventIdGenerator;
+import com.example.eventsourcing.core.EventStore;
+import com.example.eventsourcing.core.Snapshot;
+import com.example.eventsourcing.core.SnapshotPolicy;
+import com.example.eventsourcing.core.SnapshotStore;
+import com.example.eventsourcing.core.StreamAppend;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads and saves {@link BankAccount}s. Accounts are hydrated from their latest snapshot
+ * plus the events recorded after it, and snapshotted as the {@link SnapshotPolicy} asks,
+ * so loading an account costs the same however old it is.
+ * <p>
+ * Recently used accounts are also kept hydrated in an {@link AggregateCache}. A cached
+ * account is checked against {@link EventStore#getCurrentVersion} on every load and only
+ * the events it is missing are applied, so a hot account is never replayed twice.
+ * <p>
+ * Accounts opened with {@link #open} or loaded by the repository take their event and
+ * snapshot times from the repository's {@link EventClock}, and their event and transaction
+ * ids from its {@link EventIdGenerator}.
+ */
+public class BankAccountRepository {
+    
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+    
+    private final EventStore eventStore;
+    private final SnapshotStore<AccountState> snapshotStore;
+    private final SnapshotPolicy snapshotPolicy;
+    private final AggregateCache<AccountState> cache;
+    private final EventClock clock;
+    private final EventIdGenerator idGenerator;
+    
+    public BankAccountRepository(EventStore eventStore, SnapshotStore<AccountState> snapshotStore,
+                                 SnapshotPolicy snapshotPolicy) {
+        this(eventStore, snapshotStore, snapshotPolicy, DEFAULT_CACHE_SIZE);
+    }
+    
+    public BankAccountRepository(EventStore eventStore, SnapshotStore<AccountState> snapshotStore,
+                                 SnapshotPolicy snapshotPolicy, int cacheSize) {
+        this(eventStore, snapshotStore, snapshotPolicy, cacheSize, EventClock.system(), EventIdGenerator.timeOrdered());
+    }
+    
+    public BankAccountRepository(EventStore eventStore, SnapshotStore<AccountState> snapshotStore,
+                                 SnapshotPolicy snapshotPolicy, int cacheSize, EventClock clock,
+                                 EventIdGenerator idGenerator) {
+        this.eventStore = eventStore;
+        this.snapshotStore = snapshotStore;
+        this.snapshotPolicy = snapshotPolicy;
+        this.cache = new AggregateCache<>(cacheSize);
+        this.clock = clock;
+        this.idGenerator = idGenerator;
+    }
+    
+    /**
+     * Opens a new account on the repository's clock and id generator; {@link #save} stores it.
+     */
+    public BankAccount open(String accountHolderName, String accountType, BigDecimal initialBalance) {
+        return new BankAccount(accountHolderName, accountType, initialBalance, clock, idGenerator);
+    }
+    
+    public CompletableFuture<Optional<BankAccount>> findById(String accountId) {
+        Snapshot<AccountState> cached = cache.get(accountId);
+        if (cached == null) {
+            return load(accountId);
+        }
+        return eventStore.getCurrentVersion(accountId).thenCompose(currentVersion -> {
+            if (currentVersion == cached.getVersion()) {
+                return CompletableFuture.completedFuture(
+                    Optional.of(new BankAccount(cached, Collections.emptyList(), clock, idGenerator)));
+            }
+            if (currentVersion < cached.getVersion()) {
+                cache.invalidate(accountId);
+                return load(accountId);
+            }
+            return eventStore.getEventsFromVersion(accountId, cached.getVersion())
+                .thenCompose(tail -> snapshotVersion(accountId)
+                    .thenCompose(snapshotVersion -> hydrated(new BankAccount(cached, tail, clock, idGenerator), snapshotVersion)));
+        });
+    }
+    
+    private CompletableFuture<Optional<BankAccount>> load(String accountId) {
+        return snapshotStore.getLatestSnapshot(accountId).thenCompose(snapshot -> {
+            if (snapshot.isPresent()) {
+                return eventStore.getEventsFromVersion(accountId, snapshot.get().getVersion())
+                    .thenCompose(tail -> hydrated(new BankAccount(snapshot.get(), tail, clock, idGenerator), snapshot.get().getVersion()));
+            }
+            return eventStore.getEvents(accountId).thenCompose(events -> {
+                if (events.isEmpty()) {
+                    return CompletableFuture.completedFuture(Optional.<BankAccount>empty());
+                }
+                return hydrated(new BankAccount(accountId, events, clock, idGenerator), 0);
+            });
+        });
+    }
+    
+    private CompletableFuture<Optional<BankAccount>> hydrated(BankAccount account, long snapshotVersion) {
+        return cacheAndSnapshot(account.toSnapshot(), snapshotVersion).thenApply(ignored -> Optional.of(account));
+    }
+    
+    /**
+     * Appends the account's uncommitted events, expecting the stream to be at the version the
+     * account was loaded at, and snapshots the account if the policy asks for it.
+     */
+    public CompletableFuture<Void> save(BankAccount account) {
+        List<DomainEvent> uncommittedEvents = account.getUncommittedEvents();
+        if (uncommittedEvents.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long expectedVersion = account.getVersion() - uncommittedEvents.size();
+        return eventStore.appendEvents(account.getId(), expectedVersion, uncommittedEvents)
+            .whenComplete((ignored, error) -> {
+                if (error != null) {
+                    cache.invalidate(account.getId());
+                }
+            })
+            .thenCompose(ignored -> snapshotVersion(account.getId()))
+            .thenCompose(snapshotVersion -> {
+                account.markEventsAsCommitted();
+                return cacheAndSnapshot(account.toSnapshot(), snapshotVersion);
+            });
+    }
+    
+    /**
+     * Saves several accounts in one atomic append, so that either all of their uncommitted
+     * events are stored or none are, as a transfer between two accounts requires.
+     */
+    public CompletableFuture<Void> saveAll(List<BankAccount> accounts) {
+        Map<String, StreamAppend> appends = new LinkedHashMap<>();
+        List<BankAccount> saved = new ArrayList<>();
+        for (BankAccount account : accounts) {
+            List<DomainEvent> uncommittedEvents = account.getUncommittedEvents();
+            if (!uncommittedEvents.isEmpty()) {
+                long expectedVersion = account.getVersion() - uncommittedEvents.size();
+                appends.put(account.getId(), new StreamAppend(expectedVersion, uncommittedEvents));
+                saved.add(account);
+            }
+        }
+        if (appends.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return eventStore.appendEventsAtomically(appends)
+            .whenComplete((ignored, error) -> {
+                if (error != null) {
+                    appends.keySet().forEach(cache::invalidate);
+                }
+            })
+            .thenCompose(ignored -> {
+                List<CompletableFuture<Void>> snapshots = new ArrayList<>();
+                for (BankAccount account : saved) {
+                    account.markEventsAsCommitted();
+                    Snapshot<AccountState> state = account.toSnapshot();
+                    snapshots.add(snapshotVersion(account.getId())
+                        .thenCompose(snapshotVersion -> cacheAndSnapshot(state, snapshotVersion)));
+                }
+                return CompletableFuture.allOf(snapshots.toArray(new CompletableFuture<?>[0]));
+            });
+    }
+    
+    /**
+     * Returns the version of the account's latest stored snapshot, from the cache if the
+     * account is cached and otherwise from the snapshot store.
+     */
+    private CompletableFuture<Long> snapshotVersion(String accountId) {
+        long cached = cache.getSnapshotVersion(accountId);
+        if (cached != AggregateCache.UNKNOWN_VERSION) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return snapshotStore.getLatestSnapshot(accountId)
+            .thenApply(snapshot -> snapshot.map(Snapshot::getVersion).orElse(0L));
+    }
+    
+    /**
+     * Caches {@code state} and snapshots it if the policy asks for it, measuring from the
+     * latest stored snapshot rather than from the version the account was loaded at.
+     */
+    private CompletableFuture<Void> cacheAndSnapshot(Snapshot<AccountState> state, long snapshotVersion) {
+        cache.put(state, snapshotVersion);
+        if (!snapshotPolicy.shouldSnapshot(snapshotVersion, state.getVersion())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return snapshotStore.saveSnapshot(state)
+            .thenRun(() -> cache.put(state, state.getVersion()));
+    }
+    
+    public AggregateCache.CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.eventsourcing.domain.account;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-scale arithmetic on amounts held as {@code long} minor units (paise), the
+ * representation used inside accounts, account events and projections. Accounts use a
+ * single currency, so every amount has the same scale and adding two amounts is a plain
+ * {@code long} addition that allocates nothing. Public APIs still take and return
+ * {@link BigDecimal}; conversion happens only there.
+ */
+public final class Money {
+
+    /**
+     * Number of decimal places of every amount.
+     */
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code amount} is {@code null}, has more than
+     *                                  {@link #SCALE} decimal places or does not fit in a long
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount is required");
+        }
+        try {
+            return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must have at most " + SCALE
+                + " decimal places and fit in a long: " + amount, e);
+        }
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long add(long minorUnits, long addend) {
+        return Math.addExact(minorUnits, addend);
+    }
+
+    /**
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long subtract(long minorUnits, long subtrahend) {
+        return Math.subtractExact(minorUnits, subtrahend);
+    }
+
+    public static double toDouble(long minorUnits) {
+        return toBigDecimal(minorUnits).doubleValue();
+    }
+}
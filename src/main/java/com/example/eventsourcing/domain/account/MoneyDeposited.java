@@ -6,45 +6,57 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
 
+/**
+ * Amounts are held in {@link Money} minor units.
+ */
 public class MoneyDeposited extends AbstractDomainEvent {
     
-    private final BigDecimal amount;
-    private final BigDecimal newBalance;
+    private final long amount;
+    private final long newBalance;
     private final String transactionId;
     private final String description;
     private final String depositedBy;
     
-    public MoneyDeposited(String aggregateId, long aggregateVersion, long sequenceNumber,
-                         BigDecimal amount, BigDecimal newBalance, String transactionId,
+    public MoneyDeposited(UUID eventId, String aggregateId, long aggregateVersion, long occurredAtMicros, long sequenceNumber,
+                         long amount, long newBalance, String transactionId,
                          String description, String depositedBy) {
-        super(aggregateId, aggregateVersion, sequenceNumber);
+        super(eventId, aggregateId, aggregateVersion, occurredAtMicros, sequenceNumber);
         this.amount = amount;
         this.newBalance = newBalance;
         this.transactionId = transactionId;
         this.description = description;
-        this.depositedBy = depositedBy;
+        this.depositedBy = intern(depositedBy);
     }
     
     public MoneyDeposited(UUID eventId, String aggregateId, long aggregateVersion, 
                          Instant occurredAt, long sequenceNumber,
-                         BigDecimal amount, BigDecimal newBalance, String transactionId,
+                         long amount, long newBalance, String transactionId,
                          String description, String depositedBy) {
         super(eventId, aggregateId, aggregateVersion, occurredAt, sequenceNumber);
         this.amount = amount;
         this.newBalance = newBalance;
         this.transactionId = transactionId;
         this.description = description;
-        this.depositedBy = depositedBy;
+        this.depositedBy = intern(depositedBy);
     }
     
     public BigDecimal getAmount() {
+        return Money.toBigDecimal(amount);
+    }
+    
+    public long getAmountMinorUnits() {
         return amount;
     }
     
     public BigDecimal getNewBalance() {
+        return Money.toBigDecimal(newBalance);
+    }
+    
+    public long getNewBalanceMinorUnits() {
         return newBalance;
     }
     
+    @Override
     public String getTransactionId() {
         return transactionId;
     }
@@ -65,6 +77,6 @@ public class MoneyDeposited extends AbstractDomainEvent {
     @Override
     public String toString() {
         return String.format("MoneyDeposited{accountId='%s', amount=%s, newBalance=%s, transactionId='%s', description='%s', depositedBy='%s', version=%d}",
-                getAggregateId(), amount, newBalance, transactionId, description, depositedBy, getAggregateVersion());
+                getAggregateId(), getAmount(), getNewBalance(), transactionId, description, depositedBy, getAggregateVersion());
     }
 }
\ No newline at end of file
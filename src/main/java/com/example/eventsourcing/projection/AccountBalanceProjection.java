@@ -1,8 +1,11 @@
 package com.example.eventsourcing.projection;
 
 import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventHandlers;
+import com.example.eventsourcing.core.StringDictionary;
 import com.example.eventsourcing.domain.account.AccountClosed;
 import com.example.eventsourcing.domain.account.AccountOpened;
+import com.example.eventsourcing.domain.account.Money;
 import com.example.eventsourcing.domain.account.MoneyDeposited;
 import com.example.eventsourcing.domain.account.MoneyWithdrawn;
 
@@ -10,9 +13,17 @@ import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 public class AccountBalanceProjection implements EventProjection {
     
+    private static final EventHandlers<AccountBalanceProjection> HANDLERS = EventHandlers.<AccountBalanceProjection>builder()
+        .on(AccountOpened.class, AccountBalanceProjection::processAccountOpened)
+        .on(MoneyDeposited.class, AccountBalanceProjection::processMoneyDeposited)
+        .on(MoneyWithdrawn.class, AccountBalanceProjection::processMoneyWithdrawn)
+        .on(AccountClosed.class, AccountBalanceProjection::processAccountClosed)
+        .build();
+    
     private final String projectionName;
     private final Map<String, AccountBalance> accountBalances;
     
@@ -20,16 +31,23 @@ public class AccountBalanceProjection implements EventProjection {
         private final String accountId;
         private final String accountHolderName;
         private final String accountType;
-        private final BigDecimal balance;
+        private final int accountTypeCode;
+        private final long balance;
         
         private final boolean isClosed;
         private final long lastEventVersion;
         
+        /**
+         * @param balance the balance in {@link Money} minor units
+         */
         public AccountBalance(String accountId, String accountHolderName, String accountType,
-                            BigDecimal balance, boolean isClosed, long lastEventVersion) {
+                            long balance, boolean isClosed, long lastEventVersion) {
+            StringDictionary strings = StringDictionary.shared();
             this.accountId = accountId;
-            this.accountHolderName = accountHolderName;
-            this.accountType = accountType;
+            this.accountHolderName = strings.intern(accountHolderName);
+            this.accountTypeCode = strings.encode(accountType);
+            this.accountType = accountTypeCode == StringDictionary.NOT_ENCODED
+                    ? accountType : strings.decode(accountTypeCode);
             this.balance = balance;
             this.isClosed = isClosed;
             this.lastEventVersion = lastEventVersion;
@@ -48,6 +66,10 @@ public class AccountBalanceProjection implements EventProjection {
         }
         
         public BigDecimal getBalance() {
+            return Money.toBigDecimal(balance);
+        }
+        
+        public long getBalanceMinorUnits() {
             return balance;
         }
         
@@ -63,7 +85,7 @@ public class AccountBalanceProjection implements EventProjection {
         @Override
         public String toString() {
         return String.format("AccountBalance{id='%s', holder='%s', type='%s', balance=%s, closed=%s, version=%d}",
-            accountId, accountHolderName, accountType, balance, isClosed, lastEventVersion);
+            accountId, accountHolderName, accountType, getBalance(), isClosed, lastEventVersion);
         }
     }
     
@@ -79,22 +101,7 @@ public class AccountBalanceProjection implements EventProjection {
     
     @Override
     public void processEvent(DomainEvent event) {
-        switch (event.getEventType()) {
-            case "AccountOpened":
-                processAccountOpened((AccountOpened) event);
-                break;
-            case "MoneyDeposited":
-                processMoneyDeposited((MoneyDeposited) event);
-                break;
-            case "MoneyWithdrawn":
-                processMoneyWithdrawn((MoneyWithdrawn) event);
-                break;
-            case "AccountClosed":
-                processAccountClosed((AccountClosed) event);
-                break;
-            default:
-                break;
-        }
+        HANDLERS.dispatch(this, event);
     }
     
     private void processAccountOpened(AccountOpened event) {
@@ -102,7 +109,7 @@ public class AccountBalanceProjection implements EventProjection {
             event.getAggregateId(),
             event.getAccountHolderName(),
             event.getAccountType(),
-            event.getInitialBalance(),
+            event.getInitialBalanceMinorUnits(),
             false,
             event.getAggregateVersion()
         );
@@ -117,7 +124,7 @@ public class AccountBalanceProjection implements EventProjection {
                 currentBalance.getAccountId(),
                 currentBalance.getAccountHolderName(),
                 currentBalance.getAccountType(),
-                event.getNewBalance(),
+                event.getNewBalanceMinorUnits(),
                 currentBalance.isClosed(),
                 event.getAggregateVersion()
             );
@@ -133,7 +140,7 @@ public class AccountBalanceProjection implements EventProjection {
                 currentBalance.getAccountId(),
                 currentBalance.getAccountHolderName(),
                 currentBalance.getAccountType(),
-                event.getNewBalance(),
+                event.getNewBalanceMinorUnits(),
                 currentBalance.isClosed(),
                 event.getAggregateVersion()
             );
@@ -149,7 +156,7 @@ public class AccountBalanceProjection implements EventProjection {
                 currentBalance.getAccountId(),
                 currentBalance.getAccountHolderName(),
                 currentBalance.getAccountType(),
-                event.getFinalBalance(),
+                event.getFinalBalanceMinorUnits(),
                 true,
                 event.getAggregateVersion()
             );
@@ -176,18 +183,36 @@ public class AccountBalanceProjection implements EventProjection {
         return new HashMap<>(accountBalances);
     }
     
+    /**
+     * Compares dictionary codes; only types that could not be encoded fall back to
+     * comparing strings.
+     */
     public BigDecimal getTotalBalanceByType(String accountType) {
-        return accountBalances.values().stream()
-            .filter(balance -> accountType.equals(balance.getAccountType()) && !balance.isClosed())
-            .map(AccountBalance::getBalance)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        int code = StringDictionary.shared().codeOf(accountType);
+        if (code != StringDictionary.NOT_ENCODED) {
+            return total(balance -> balance.accountTypeCode == code && !balance.isClosed());
+        }
+        return total(balance -> balance.accountTypeCode == StringDictionary.NOT_ENCODED
+                && accountType.equals(balance.getAccountType()) && !balance.isClosed());
     }
     
     public BigDecimal getTotalBalance() {
-        return accountBalances.values().stream()
-            .filter(balance -> !balance.isClosed())
-            .map(AccountBalance::getBalance)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return total(balance -> !balance.isClosed());
+    }
+    
+    /**
+     * Sums in minor units; a total over no accounts is {@link BigDecimal#ZERO}.
+     */
+    private BigDecimal total(Predicate<AccountBalance> filter) {
+        long total = 0;
+        boolean any = false;
+        for (AccountBalance balance : accountBalances.values()) {
+            if (filter.test(balance)) {
+                total = Money.add(total, balance.getBalanceMinorUnits());
+                any = true;
+            }
+        }
+        return any ? Money.toBigDecimal(total) : BigDecimal.ZERO;
     }
     
     public Map<String, Long> getAccountCountByType() {
@@ -200,10 +225,18 @@ public class AccountBalanceProjection implements EventProjection {
         return counts;
     }
     
+    /**
+     * Balances are independent per account and held in a concurrent map.
+     */
+    @Override
+    public boolean supportsPartitionedReplay() {
+        return true;
+    }
+    
     @Override
     public boolean isValid() {
         return accountBalances.values().stream()
-            .allMatch(balance -> balance.getBalance().compareTo(BigDecimal.ZERO) >= 0);
+            .allMatch(balance -> balance.getBalanceMinorUnits() >= 0);
     }
     
     @Override
@@ -0,0 +1,15 @@
+package com.example.eventsourcing.projection;
+
+/**
+ * Remembers how far each projection has processed the global log. A checkpoint is the
+ * global position of the next event the projection has not seen yet.
+ */
+public interface CheckpointStore {
+    
+    /**
+     * @return the stored checkpoint, or 0 if the projection has none
+     */
+    long load(String projectionName);
+    
+    void save(String projectionName, long position);
+}
@@ -23,4 +23,13 @@ public interface EventProjection {
     default boolean isValid() {
         return true;
     }
+    
+    /**
+     * Whether events of different aggregates may be applied concurrently and out of global
+     * order, as long as each aggregate's events arrive in order. Such projections can be
+     * rebuilt by a {@link ParallelProjectionRebuilder}.
+     */
+    default boolean supportsPartitionedReplay() {
+        return false;
+    }
 }
\ No newline at end of file
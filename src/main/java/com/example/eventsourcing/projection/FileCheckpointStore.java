@@ -0,0 +1,50 @@
+package com.example.eventsourcing.projection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Keeps all checkpoints in one properties file. Every save writes a temporary file and
+ * atomically renames it over the old one, so a crash leaves either the old or the new
+ * checkpoints, never a torn file.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+    
+    private final Path file;
+    private final Properties checkpoints = new Properties();
+    
+    public FileCheckpointStore(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                checkpoints.load(in);
+            }
+        }
+    }
+    
+    @Override
+    public synchronized long load(String projectionName) {
+        String value = checkpoints.getProperty(projectionName);
+        return value == null ? 0 : Long.parseLong(value);
+    }
+    
+    @Override
+    public synchronized void save(String projectionName, long position) {
+        checkpoints.setProperty(projectionName, Long.toString(position));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                checkpoints.store(out, "Projection checkpoints");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
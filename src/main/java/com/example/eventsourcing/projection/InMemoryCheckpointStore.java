@@ -0,0 +1,19 @@
+package com.example.eventsourcing.projection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryCheckpointStore implements CheckpointStore {
+    
+    private final Map<String, Long> checkpoints = new ConcurrentHashMap<>();
+    
+    @Override
+    public long load(String projectionName) {
+        return checkpoints.getOrDefault(projectionName, 0L);
+    }
+    
+    @Override
+    public void save(String projectionName, long position) {
+        checkpoints.put(projectionName, position);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.eventsourcing.projection;
+
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rebuilds projections from the whole log on several threads. The calling thread reads the
+ * log page by page and splits every page by aggregate id hash into one partition per
+ * worker; each worker applies its partition's events to all projections in log order.
+ * <p>
+ * Events of one aggregate always land on the same worker, so per-aggregate order is kept,
+ * but events of different aggregates are applied concurrently and in no particular order.
+ * Only projections that declare {@link EventProjection#supportsPartitionedReplay()} can be
+ * rebuilt this way. Each worker queue holds a few chunks, so a slow worker holds back the
+ * reader instead of letting pages pile up in memory.
+ */
+public class ParallelProjectionRebuilder {
+    
+    private static final int QUEUE_CAPACITY = 4;
+    private static final List<DomainEvent> END = new ArrayList<>(0);
+    
+    private final EventStore eventStore;
+    private final int partitions;
+    private final int batchSize;
+    
+    public ParallelProjectionRebuilder(EventStore eventStore, int partitions, int batchSize) {
+        if (partitions <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Partitions and batch size must be positive");
+        }
+        this.eventStore = eventStore;
+        this.partitions = partitions;
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Resets {@code projections} and applies the log to them up to its current end.
+     *
+     * @return the global position after the last applied event
+     */
+    public long rebuild(List<EventProjection> projections) {
+        for (EventProjection projection : projections) {
+            if (!projection.supportsPartitionedReplay()) {
+                throw new IllegalArgumentException(
+                    "Projection cannot be replayed in partitions: " + projection.getProjectionName());
+            }
+            projection.reset();
+        }
+        
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<BlockingQueue<List<DomainEvent>>> queues = new ArrayList<>(partitions);
+        List<Thread> workers = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            BlockingQueue<List<DomainEvent>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            Thread worker = new Thread(() -> apply(queue, projections, failure), "projection-rebuild-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            queues.add(queue);
+            workers.add(worker);
+        }
+        
+        long position = 0;
+        try {
+            while (failure.get() == null) {
+                List<DomainEvent> page = eventStore.readAllEvents(position, batchSize).join();
+                dispatch(page, queues);
+                position += page.size();
+                if (page.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new IllegalStateException("Projection rebuild interrupted", e));
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            finish(queues, workers);
+        }
+        
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return position;
+    }
+    
+    private void dispatch(List<DomainEvent> page, List<BlockingQueue<List<DomainEvent>>> queues)
+            throws InterruptedException {
+        List<List<DomainEvent>> chunks = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            chunks.add(new ArrayList<>());
+        }
+        for (DomainEvent event : page) {
+            chunks.get(partitionOf(event.getAggregateId())).add(event);
+        }
+        for (int i = 0; i < partitions; i++) {
+            if (!chunks.get(i).isEmpty()) {
+                queues.get(i).put(chunks.get(i));
+            }
+        }
+    }
+    
+    private int partitionOf(String aggregateId) {
+        int h = aggregateId.hashCode();
+        return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % partitions;
+    }
+    
+    private static void apply(BlockingQueue<List<DomainEvent>> queue, List<EventProjection> projections,
+                              AtomicReference<RuntimeException> failure) {
+        try {
+            List<DomainEvent> chunk;
+            while ((chunk = queue.take()) != END) {
+                if (failure.get() != null) {
+                    continue;
+                }
+                try {
+                    for (EventProjection projection : projections) {
+                        projection.processEvents(chunk);
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void finish(List<BlockingQueue<List<DomainEvent>>> queues, List<Thread> workers) {
+        boolean interrupted = false;
+        for (BlockingQueue<List<DomainEvent>> queue : queues) {
+            while (true) {
+                try {
+                    queue.put(END);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        for (Thread worker : workers) {
+            while (true) {
+                try {
+                    worker.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
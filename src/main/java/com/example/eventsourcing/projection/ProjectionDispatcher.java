@@ -0,0 +1,335 @@
+package com.example.eventsourcing.projection;
+
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventStore;
+import com.example.eventsourcing.core.EventSubscriber;
+import com.example.eventsourcing.core.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans the global log out to several projections while reading it only once.
+ * <p>
+ * A single store subscription publishes each event into a preallocated ring buffer. Every
+ * projection runs on its own thread with its own sequence, the global position of the next
+ * event it will process, and takes all events available to it as one batch for
+ * {@link EventProjection#processEvents}. A projection registered with dependencies only
+ * sees an event once all of them have processed it. The publisher never overwrites a slot
+ * that a projection has not yet consumed, so the slowest projection bounds how far ahead
+ * the reader runs. Slots are cleared once every projection has passed them, so the ring
+ * does not keep consumed events reachable.
+ * <p>
+ * A projection with nothing to do spins and yields briefly, then parks until the publisher
+ * or one of its dependencies makes progress, so idle projections cost no CPU.
+ */
+public class ProjectionDispatcher implements AutoCloseable {
+    
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+    
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    
+    private final EventStore eventStore;
+    private final DomainEvent[] ring;
+    private final int mask;
+    private final int maxBatchSize;
+    private final Map<EventProjection, Consumer> consumers = new LinkedHashMap<>();
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicBoolean releasing = new AtomicBoolean();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    
+    private volatile boolean running;
+    private Consumer[] gating;
+    private Subscription subscription;
+    
+    public ProjectionDispatcher(EventStore eventStore) {
+        this(eventStore, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_SIZE / 4);
+    }
+    
+    /**
+     * @param bufferSize   ring capacity in events, rounded up to a power of two
+     * @param maxBatchSize largest batch handed to a projection at once
+     */
+    public ProjectionDispatcher(EventStore eventStore, int bufferSize, int maxBatchSize) {
+        if (bufferSize <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Buffer and batch size must be positive");
+        }
+        int size = bufferSize == 1 ? 1 : Integer.highestOneBit(bufferSize - 1) << 1;
+        this.eventStore = eventStore;
+        this.ring = new DomainEvent[size];
+        this.mask = size - 1;
+        this.maxBatchSize = maxBatchSize;
+    }
+    
+    /**
+     * Adds {@code projection}, which will only process an event after every projection in
+     * {@code dependsOn} has. Dependencies must be registered first.
+     */
+    public synchronized ProjectionDispatcher register(EventProjection projection, EventProjection... dependsOn) {
+        if (subscription != null) {
+            throw new IllegalStateException("Projections must be registered before the dispatcher starts");
+        }
+        if (consumers.containsKey(projection)) {
+            throw new IllegalArgumentException("Projection is already registered: " + projection.getProjectionName());
+        }
+        Consumer[] barrier = new Consumer[dependsOn.length];
+        for (int i = 0; i < dependsOn.length; i++) {
+            barrier[i] = consumers.get(dependsOn[i]);
+            if (barrier[i] == null) {
+                throw new IllegalArgumentException("Dependency is not registered: " + dependsOn[i].getProjectionName());
+            }
+        }
+        consumers.put(projection, new Consumer(projection, barrier));
+        return this;
+    }
+    
+    /**
+     * Starts one thread per projection and subscribes to the log from {@code fromPosition}.
+     */
+    public synchronized void start(long fromPosition) {
+        if (subscription != null) {
+            throw new IllegalStateException("Dispatcher is already started");
+        }
+        if (consumers.isEmpty()) {
+            throw new IllegalStateException("No projections registered");
+        }
+        cursor.set(fromPosition);
+        released.set(fromPosition);
+        gating = consumers.values().toArray(new Consumer[0]);
+        running = true;
+        for (Consumer consumer : gating) {
+            consumer.sequence.set(fromPosition);
+            consumer.thread.start();
+        }
+        subscription = eventStore.subscribe(fromPosition, Math.min(ring.length, maxBatchSize), new Publisher());
+    }
+    
+    /**
+     * The global position of the next event {@code projection} will process.
+     */
+    public long getSequence(EventProjection projection) {
+        Consumer consumer = consumers.get(projection);
+        if (consumer == null) {
+            throw new IllegalArgumentException("Unknown projection: " + projection.getProjectionName());
+        }
+        return consumer.sequence.get();
+    }
+    
+    /**
+     * Waits until every projection has processed all events before {@code position}.
+     *
+     * @throws TimeoutException if that does not happen within the timeout
+     */
+    public void awaitProcessed(long position, long timeout, TimeUnit unit) throws TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (minimumSequence() < position) {
+            RuntimeException error = failure.get();
+            if (error != null) {
+                throw error;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new TimeoutException("Projections did not reach position " + position);
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+    
+    private long minimumSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (Consumer consumer : gating) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+    
+    /**
+     * Stops the subscription and the projection threads. Events already in the ring may be
+     * left unprocessed.
+     */
+    @Override
+    public synchronized void close() {
+        if (subscription == null) {
+            return;
+        }
+        running = false;
+        subscription.close();
+        for (Consumer consumer : gating) {
+            LockSupport.unpark(consumer.thread);
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Wakes the parked projections. The cursor or sequence they wait on must already be
+     * set; a projection registers as waiting before it checks them for the last time.
+     */
+    private void signalWaiting() {
+        if (waiters.get() == 0) {
+            return;
+        }
+        for (Consumer consumer : gating) {
+            if (consumer.waiting) {
+                LockSupport.unpark(consumer.thread);
+            }
+        }
+    }
+    
+    /**
+     * Clears the slots that every projection has passed. One thread clears at a time, and
+     * {@link #released} only moves once its slots are cleared, so the publisher never
+     * reuses a slot that is still being cleared.
+     */
+    private void release() {
+        while (true) {
+            long minimum = minimumSequence();
+            if (released.get() >= minimum || !releasing.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                for (long position = released.get(); position < minimum; position++) {
+                    ring[(int) (position & mask)] = null;
+                }
+                released.set(minimum);
+            } finally {
+                releasing.set(false);
+            }
+        }
+    }
+    
+    private static int idle(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+            return tries;
+        }
+        return tries + 1;
+    }
+    
+    private final class Publisher implements EventSubscriber {
+        @Override
+        public void onEvent(long position, DomainEvent event) {
+            int tries = 0;
+            while (position - released.get() >= ring.length) {
+                release();
+                if (position - released.get() < ring.length) {
+                    break;
+                }
+                RuntimeException error = failure.get();
+                if (error != null) {
+                    throw new IllegalStateException("A projection failed, dispatch stopped", error);
+                }
+                if (!running) {
+                    return;
+                }
+                tries = idle(tries);
+            }
+            ring[(int) (position & mask)] = event;
+            cursor.set(position + 1);
+            signalWaiting();
+        }
+    }
+    
+    private final class Consumer implements Runnable {
+        private final EventProjection projection;
+        private final Consumer[] dependencies;
+        private final AtomicLong sequence = new AtomicLong();
+        private final Thread thread;
+        private volatile boolean waiting;
+        
+        private Consumer(EventProjection projection, Consumer[] dependencies) {
+            this.projection = projection;
+            this.dependencies = dependencies;
+            this.thread = new Thread(this, "projection-" + projection.getProjectionName());
+            this.thread.setDaemon(true);
+        }
+        
+        private long available() {
+            long available = cursor.get();
+            for (Consumer dependency : dependencies) {
+                available = Math.min(available, dependency.sequence.get());
+            }
+            return available;
+        }
+        
+        @Override
+        public void run() {
+            List<DomainEvent> batch = new ArrayList<>(maxBatchSize);
+            int tries = 0;
+            while (running) {
+                long next = sequence.get();
+                long end = Math.min(available(), next + maxBatchSize);
+                if (end <= next) {
+                    if (tries < SPIN_TRIES + YIELD_TRIES) {
+                        tries = idle(tries);
+                    } else {
+                        await(next);
+                    }
+                    continue;
+                }
+                tries = 0;
+                for (long position = next; position < end; position++) {
+                    batch.add(ring[(int) (position & mask)]);
+                }
+                try {
+                    projection.processEvents(batch);
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    return;
+                } finally {
+                    batch.clear();
+                }
+                sequence.set(end);
+                signalWaiting();
+                release();
+            }
+        }
+        
+        /**
+         * Parks until an event after {@code next} is available or the dispatcher closes.
+         */
+        private void await(long next) {
+            waiting = true;
+            waiters.incrementAndGet();
+            try {
+                while (running && available() <= next) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                waiting = false;
+                waiters.decrementAndGet();
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        long[] sequences = new long[consumers.size()];
+        int i = 0;
+        for (Consumer consumer : consumers.values()) {
+            sequences[i++] = consumer.sequence.get();
+        }
+        return String.format("ProjectionDispatcher{cursor=%d, sequences=%s}", cursor.get(), Arrays.toString(sequences));
+    }
+}
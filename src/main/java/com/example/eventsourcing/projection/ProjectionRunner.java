@@ -0,0 +1,157 @@
+package com.example.eventsourcing.projection;
+
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventStore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps projections up to date incrementally. Each registered projection has a checkpoint,
+ * and {@link #catchUp()} feeds it only the events appended since, in batches through
+ * {@link EventProjection#processEvents}, saving the checkpoint after every batch.
+ * <p>
+ * Projections resume from their stored checkpoint when registered, so a persistent
+ * {@link CheckpointStore} should only be paired with projections whose state survives a
+ * restart as well; otherwise call {@link #rebuild} after registering.
+ */
+public class ProjectionRunner {
+    
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    
+    private final EventStore eventStore;
+    private final CheckpointStore checkpointStore;
+    private final int batchSize;
+    private final Map<String, Registration> projections = new LinkedHashMap<>();
+    
+    public ProjectionRunner(EventStore eventStore, CheckpointStore checkpointStore) {
+        this(eventStore, checkpointStore, DEFAULT_BATCH_SIZE);
+    }
+    
+    public ProjectionRunner(EventStore eventStore, CheckpointStore checkpointStore, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.eventStore = eventStore;
+        this.checkpointStore = checkpointStore;
+        this.batchSize = batchSize;
+    }
+    
+    public synchronized ProjectionRunner register(EventProjection projection) {
+        String name = projection.getProjectionName();
+        if (projections.containsKey(name)) {
+            throw new IllegalArgumentException("Projection is already registered: " + name);
+        }
+        projections.put(name, new Registration(projection, checkpointStore.load(name)));
+        return this;
+    }
+    
+    /**
+     * Applies every event appended since the last call to all registered projections. The log
+     * is read once, from the oldest checkpoint, and each page is shared by all projections.
+     *
+     * @return the number of events applied, summed over projections
+     */
+    public synchronized long catchUp() {
+        if (projections.isEmpty()) {
+            return 0;
+        }
+        long position = Long.MAX_VALUE;
+        for (Registration registration : projections.values()) {
+            position = Math.min(position, registration.position);
+        }
+        
+        long applied = 0;
+        while (true) {
+            List<DomainEvent> page = eventStore.readAllEvents(position, batchSize).join();
+            if (page.isEmpty()) {
+                return applied;
+            }
+            long end = position + page.size();
+            for (Registration registration : projections.values()) {
+                if (registration.position < end) {
+                    int from = (int) (registration.position - position);
+                    registration.projection.processEvents(from == 0 ? page : page.subList(from, page.size()));
+                    applied += end - registration.position;
+                    registration.position = end;
+                    checkpointStore.save(registration.projection.getProjectionName(), end);
+                }
+            }
+            position = end;
+            if (page.size() < batchSize) {
+                return applied;
+            }
+        }
+    }
+    
+    private long catchUp(Registration registration) {
+        long applied = 0;
+        while (true) {
+            List<DomainEvent> page = eventStore.readAllEvents(registration.position, batchSize).join();
+            if (page.isEmpty()) {
+                return applied;
+            }
+            registration.projection.processEvents(page);
+            registration.position += page.size();
+            checkpointStore.save(registration.projection.getProjectionName(), registration.position);
+            applied += page.size();
+            if (page.size() < batchSize) {
+                return applied;
+            }
+        }
+    }
+    
+    /**
+     * Resets {@code projectionName} and replays the whole log into it.
+     */
+    public synchronized void rebuild(String projectionName) {
+        Registration registration = registrationFor(projectionName);
+        registration.projection.reset();
+        registration.position = 0;
+        checkpointStore.save(projectionName, 0);
+        catchUp(registration);
+    }
+    
+    /**
+     * Resets every registered projection and replays the log into them on {@code parallelism}
+     * threads, see {@link ParallelProjectionRebuilder}.
+     */
+    public synchronized void rebuildAll(int parallelism) {
+        List<EventProjection> all = new ArrayList<>();
+        for (Registration registration : projections.values()) {
+            all.add(registration.projection);
+        }
+        long position = new ParallelProjectionRebuilder(eventStore, parallelism, batchSize).rebuild(all);
+        for (Registration registration : projections.values()) {
+            registration.position = position;
+            checkpointStore.save(registration.projection.getProjectionName(), position);
+        }
+    }
+    
+    /**
+     * The global position of the next event {@code projectionName} will process.
+     */
+    public synchronized long getPosition(String projectionName) {
+        return registrationFor(projectionName).position;
+    }
+    
+    private Registration registrationFor(String projectionName) {
+        Registration registration = projections.get(projectionName);
+        if (registration == null) {
+            throw new IllegalArgumentException("Unknown projection: " + projectionName);
+        }
+        return registration;
+    }
+    
+    private static final class Registration {
+        private final EventProjection projection;
+        private long position;
+        
+        private Registration(EventProjection projection, long position) {
+            this.projection = projection;
+            this.position = position;
+        }
+    }
+}
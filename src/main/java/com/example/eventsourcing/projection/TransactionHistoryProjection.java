@@ -1,8 +1,12 @@
 package com.example.eventsourcing.projection;
 
 import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventClock;
+import com.example.eventsourcing.core.EventHandlers;
+import com.example.eventsourcing.core.StringDictionary;
 import com.example.eventsourcing.domain.account.AccountClosed;
 import com.example.eventsourcing.domain.account.AccountOpened;
+import com.example.eventsourcing.domain.account.Money;
 import com.example.eventsourcing.domain.account.MoneyDeposited;
 import com.example.eventsourcing.domain.account.MoneyWithdrawn;
 
@@ -10,37 +14,67 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 public class TransactionHistoryProjection implements EventProjection {
     
+    private static final EventHandlers<TransactionHistoryProjection> HANDLERS = EventHandlers.<TransactionHistoryProjection>builder()
+        .on(AccountOpened.class, TransactionHistoryProjection::processAccountOpened)
+        .on(MoneyDeposited.class, TransactionHistoryProjection::processMoneyDeposited)
+        .on(MoneyWithdrawn.class, TransactionHistoryProjection::processMoneyWithdrawn)
+        .on(AccountClosed.class, TransactionHistoryProjection::processAccountClosed)
+        .build();
+    
+    private static final String DEPOSIT = "DEPOSIT";
+    private static final String WITHDRAWAL = "WITHDRAWAL";
+    private static final AccountActivity NO_ACTIVITY = new AccountActivity(0, 0, 0, 0, 0, null, null);
+    
     private final String projectionName;
-    private final Map<String, List<TransactionRecord>> transactionsByAccount;
+    private final Map<String, AccountHistory> transactionsByAccount;
     private final Map<String, List<TransactionRecord>> transactionsById;
-    private final List<TransactionRecord> allTransactions;
+    private final Map<String, ConcurrentSkipListMap<TimeKey, TransactionRecord>> transactionsByType;
+    private final ConcurrentSkipListMap<TimeKey, TransactionRecord> transactionsByTime;
+    private final LongAdder transactionCount = new LongAdder();
     
     public static class TransactionRecord {
         private final String transactionId;
         private final String accountId;
         private final String transactionType;
-        private final BigDecimal amount;
-        private final BigDecimal balanceAfter;
+        private final long amount;
+        private final long balanceAfter;
         private final String description;
         private final String performedBy;
-        private final Instant occurredAt;
+        private final long occurredAtMicros;
         private final long eventVersion;
         
+        /**
+         * @param amount       the amount in {@link Money} minor units
+         * @param balanceAfter the resulting balance in {@link Money} minor units
+         */
         public TransactionRecord(String transactionId, String accountId, String transactionType,
-                               BigDecimal amount, BigDecimal balanceAfter, String description,
+                               long amount, long balanceAfter, String description,
                                String performedBy, Instant occurredAt, long eventVersion) {
+            this(transactionId, accountId, transactionType, amount, balanceAfter, description,
+                    performedBy, EventClock.toMicros(occurredAt), eventVersion);
+        }
+        
+        /**
+         * @param occurredAtMicros the occurrence time in epoch microseconds
+         */
+        public TransactionRecord(String transactionId, String accountId, String transactionType,
+                               long amount, long balanceAfter, String description,
+                               String performedBy, long occurredAtMicros, long eventVersion) {
+            StringDictionary strings = StringDictionary.shared();
             this.transactionId = transactionId;
             this.accountId = accountId;
-            this.transactionType = transactionType;
+            this.transactionType = strings.intern(transactionType);
             this.amount = amount;
             this.balanceAfter = balanceAfter;
             this.description = description;
-            this.performedBy = performedBy;
-            this.occurredAt = occurredAt;
+            this.performedBy = strings.intern(performedBy);
+            this.occurredAtMicros = occurredAtMicros;
             this.eventVersion = eventVersion;
         }
         
@@ -57,10 +91,18 @@ public class TransactionHistoryProjection implements EventProjection {
         }
         
         public BigDecimal getAmount() {
+            return Money.toBigDecimal(amount);
+        }
+        
+        public long getAmountMinorUnits() {
             return amount;
         }
         
         public BigDecimal getBalanceAfter() {
+            return Money.toBigDecimal(balanceAfter);
+        }
+        
+        public long getBalanceAfterMinorUnits() {
             return balanceAfter;
         }
         
@@ -73,7 +115,11 @@ public class TransactionHistoryProjection implements EventProjection {
         }
         
         public Instant getOccurredAt() {
-            return occurredAt;
+            return EventClock.toInstant(occurredAtMicros);
+        }
+        
+        public long getOccurredAtMicros() {
+            return occurredAtMicros;
         }
         
         public long getEventVersion() {
@@ -83,7 +129,183 @@ public class TransactionHistoryProjection implements EventProjection {
         @Override
         public String toString() {
             return String.format("TransactionRecord{id='%s', accountId='%s', type='%s', amount=%s, balanceAfter=%s, description='%s', performedBy='%s', occurredAt=%s}",
-                    transactionId, accountId, transactionType, amount, balanceAfter, description, performedBy, occurredAt);
+                    transactionId, accountId, transactionType, getAmount(), getBalanceAfter(), description, performedBy, getOccurredAt());
+        }
+    }
+    
+    /**
+     * Orders the time indexes by occurrence time, then by account and event version, which
+     * together identify a record, so that records with equal times are all kept. Bound
+     * keys sort before or after every record with the same time.
+     */
+    private static final class TimeKey implements Comparable<TimeKey> {
+        private static final int BEFORE = -1;
+        private static final int RECORD = 0;
+        private static final int AFTER = 1;
+        
+        private final long occurredAtMicros;
+        private final int bound;
+        private final String accountId;
+        private final long eventVersion;
+        
+        private TimeKey(long occurredAtMicros, int bound, String accountId, long eventVersion) {
+            this.occurredAtMicros = occurredAtMicros;
+            this.bound = bound;
+            this.accountId = accountId;
+            this.eventVersion = eventVersion;
+        }
+        
+        static TimeKey of(TransactionRecord record) {
+            return new TimeKey(record.getOccurredAtMicros(), RECORD, record.getAccountId(), record.getEventVersion());
+        }
+        
+        static TimeKey before(long occurredAtMicros) {
+            return new TimeKey(occurredAtMicros, BEFORE, null, 0);
+        }
+        
+        static TimeKey after(long occurredAtMicros) {
+            return new TimeKey(occurredAtMicros, AFTER, null, 0);
+        }
+        
+        @Override
+        public int compareTo(TimeKey other) {
+            int byTime = Long.compare(occurredAtMicros, other.occurredAtMicros);
+            if (byTime != 0) {
+                return byTime;
+            }
+            if (bound != RECORD || other.bound != RECORD) {
+                return Integer.compare(bound, other.bound);
+            }
+            int byAccount = accountId.compareTo(other.accountId);
+            return byAccount != 0 ? byAccount : Long.compare(eventVersion, other.eventVersion);
+        }
+    }
+    
+    /**
+     * Running totals for one account, as of the transactions applied so far.
+     */
+    public static class AccountActivity {
+        private final long depositTotal;
+        private final long depositCount;
+        private final long withdrawalTotal;
+        private final long withdrawalCount;
+        private final long transactionCount;
+        private final Instant firstActivity;
+        private final Instant lastActivity;
+        
+        AccountActivity(long depositTotal, long depositCount, long withdrawalTotal, long withdrawalCount,
+                        long transactionCount, Instant firstActivity, Instant lastActivity) {
+            this.depositTotal = depositTotal;
+            this.depositCount = depositCount;
+            this.withdrawalTotal = withdrawalTotal;
+            this.withdrawalCount = withdrawalCount;
+            this.transactionCount = transactionCount;
+            this.firstActivity = firstActivity;
+            this.lastActivity = lastActivity;
+        }
+        
+        public BigDecimal getTotalDeposits() {
+            return depositCount == 0 ? BigDecimal.ZERO : Money.toBigDecimal(depositTotal);
+        }
+        
+        public long getTotalDepositsMinorUnits() {
+            return depositTotal;
+        }
+        
+        public long getDepositCount() {
+            return depositCount;
+        }
+        
+        public BigDecimal getTotalWithdrawals() {
+            return withdrawalCount == 0 ? BigDecimal.ZERO : Money.toBigDecimal(withdrawalTotal);
+        }
+        
+        public long getTotalWithdrawalsMinorUnits() {
+            return withdrawalTotal;
+        }
+        
+        public long getWithdrawalCount() {
+            return withdrawalCount;
+        }
+        
+        public long getTransactionCount() {
+            return transactionCount;
+        }
+        
+        /**
+         * @return the earliest occurrence time, or {@code null} if there are no transactions
+         */
+        public Instant getFirstActivity() {
+            return firstActivity;
+        }
+        
+        /**
+         * @return the latest occurrence time, or {@code null} if there are no transactions
+         */
+        public Instant getLastActivity() {
+            return lastActivity;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("AccountActivity{deposits=%d totalling %s, withdrawals=%d totalling %s, transactions=%d, firstActivity=%s, lastActivity=%s}",
+                    depositCount, getTotalDeposits(), withdrawalCount, getTotalWithdrawals(), transactionCount, firstActivity, lastActivity);
+        }
+    }
+    
+    /**
+     * One account's transactions, keyed by event version for paging and by time for range
+     * queries. Both are skip lists, so readers walk them without locking and only copy the
+     * entries they return. The running totals are updated as each transaction is added, so
+     * reading them does not depend on the size of the history.
+     */
+    private static final class AccountHistory {
+        private final ConcurrentSkipListMap<Long, TransactionRecord> byVersion = new ConcurrentSkipListMap<>();
+        private final ConcurrentSkipListMap<TimeKey, TransactionRecord> byTime = new ConcurrentSkipListMap<>();
+        private long depositTotal;
+        private long depositCount;
+        private long withdrawalTotal;
+        private long withdrawalCount;
+        private long transactionCount;
+        private long firstActivityMicros = Long.MAX_VALUE;
+        private long lastActivityMicros = Long.MIN_VALUE;
+        
+        /**
+         * Keeps the first record for each version, so a redelivered event is not listed or
+         * counted twice.
+         *
+         * @return whether the record was new to this account
+         */
+        boolean add(TimeKey key, TransactionRecord record) {
+            if (byVersion.putIfAbsent(record.getEventVersion(), record) != null) {
+                return false;
+            }
+            byTime.put(key, record);
+            accumulate(record);
+            return true;
+        }
+        
+        private synchronized void accumulate(TransactionRecord record) {
+            if (DEPOSIT.equals(record.getTransactionType())) {
+                depositTotal = Money.add(depositTotal, record.getAmountMinorUnits());
+                depositCount++;
+            } else if (WITHDRAWAL.equals(record.getTransactionType())) {
+                withdrawalTotal = Money.add(withdrawalTotal, record.getAmountMinorUnits());
+                withdrawalCount++;
+            }
+            transactionCount++;
+            firstActivityMicros = Math.min(firstActivityMicros, record.getOccurredAtMicros());
+            lastActivityMicros = Math.max(lastActivityMicros, record.getOccurredAtMicros());
+        }
+        
+        synchronized long transactionCount() {
+            return transactionCount;
+        }
+        
+        synchronized AccountActivity activity() {
+            return new AccountActivity(depositTotal, depositCount, withdrawalTotal, withdrawalCount, transactionCount,
+                    transactionCount == 0 ? null : EventClock.toInstant(firstActivityMicros),
+                    transactionCount == 0 ? null : EventClock.toInstant(lastActivityMicros));
         }
     }
     
@@ -91,7 +313,8 @@ public class TransactionHistoryProjection implements EventProjection {
         this.projectionName = projectionName;
         this.transactionsByAccount = new ConcurrentHashMap<>();
     this.transactionsById = new ConcurrentHashMap<>();
-        this.allTransactions = Collections.synchronizedList(new ArrayList<>());
+        this.transactionsByType = new ConcurrentHashMap<>();
+        this.transactionsByTime = new ConcurrentSkipListMap<>();
     }
     
     @Override
@@ -101,22 +324,7 @@ public class TransactionHistoryProjection implements EventProjection {
     
     @Override
     public void processEvent(DomainEvent event) {
-        switch (event.getEventType()) {
-            case "AccountOpened":
-                processAccountOpened((AccountOpened) event);
-                break;
-            case "MoneyDeposited":
-                processMoneyDeposited((MoneyDeposited) event);
-                break;
-            case "MoneyWithdrawn":
-                processMoneyWithdrawn((MoneyWithdrawn) event);
-                break;
-            case "AccountClosed":
-                processAccountClosed((AccountClosed) event);
-                break;
-            default:
-                break;
-        }
+        HANDLERS.dispatch(this, event);
     }
     
     private void processAccountOpened(AccountOpened event) {
@@ -124,11 +332,11 @@ public class TransactionHistoryProjection implements EventProjection {
             "ACCOUNT_OPENED_" + event.getAggregateId(),
             event.getAggregateId(),
             "ACCOUNT_OPENED",
-            event.getInitialBalance(),
-            event.getInitialBalance(),
+            event.getInitialBalanceMinorUnits(),
+            event.getInitialBalanceMinorUnits(),
             "Account opened with initial balance",
             "SYSTEM",
-            event.getOccurredAt(),
+            event.getOccurredAtMicros(),
             event.getAggregateVersion()
         );
         
@@ -139,12 +347,12 @@ public class TransactionHistoryProjection implements EventProjection {
         TransactionRecord record = new TransactionRecord(
             event.getTransactionId(),
             event.getAggregateId(),
-            "DEPOSIT",
-            event.getAmount(),
-            event.getNewBalance(),
+            DEPOSIT,
+            event.getAmountMinorUnits(),
+            event.getNewBalanceMinorUnits(),
             event.getDescription(),
             event.getDepositedBy(),
-            event.getOccurredAt(),
+            event.getOccurredAtMicros(),
             event.getAggregateVersion()
         );
         
@@ -155,12 +363,12 @@ public class TransactionHistoryProjection implements EventProjection {
         TransactionRecord record = new TransactionRecord(
             event.getTransactionId(),
             event.getAggregateId(),
-            "WITHDRAWAL",
-            event.getAmount(),
-            event.getNewBalance(),
+            WITHDRAWAL,
+            event.getAmountMinorUnits(),
+            event.getNewBalanceMinorUnits(),
             event.getDescription(),
             event.getWithdrawnBy(),
-            event.getOccurredAt(),
+            event.getOccurredAtMicros(),
             event.getAggregateVersion()
         );
         
@@ -172,105 +380,217 @@ public class TransactionHistoryProjection implements EventProjection {
             "ACCOUNT_CLOSED_" + event.getAggregateId(),
             event.getAggregateId(),
             "ACCOUNT_CLOSED",
-            BigDecimal.ZERO,
-            event.getFinalBalance(),
+            0L,
+            event.getFinalBalanceMinorUnits(),
             "Account closed: " + event.getReason(),
             event.getClosedBy(),
-            event.getOccurredAt(),
+            event.getOccurredAtMicros(),
             event.getAggregateVersion()
         );
         
         addTransaction(record);
     }
     
+    /**
+     * The account's version index decides whether a record is new, so a batch that is
+     * applied again after a failure leaves every index unchanged.
+     */
     private void addTransaction(TransactionRecord record) {
-        transactionsByAccount.computeIfAbsent(record.getAccountId(), k -> Collections.synchronizedList(new ArrayList<>()))
-            .add(record);
+        TimeKey key = TimeKey.of(record);
+        if (!transactionsByAccount.computeIfAbsent(record.getAccountId(), k -> new AccountHistory()).add(key, record)) {
+            return;
+        }
         
         transactionsById.computeIfAbsent(record.getTransactionId(), k -> Collections.synchronizedList(new ArrayList<>()))
             .add(record);
         
-        allTransactions.add(record);
+        transactionCount.increment();
+        
+        transactionsByType.computeIfAbsent(record.getTransactionType(), k -> new ConcurrentSkipListMap<>())
+            .put(key, record);
+        transactionsByTime.put(key, record);
     }
     
     @Override
     public void reset() {
         transactionsByAccount.clear();
     transactionsById.clear();
-        allTransactions.clear();
+        transactionCount.reset();
+        transactionsByType.clear();
+        transactionsByTime.clear();
     }
     
     @Override
     public Object getState() {
-        return new HashMap<>(transactionsByAccount);
+        Map<String, List<TransactionRecord>> state = new HashMap<>();
+        transactionsByAccount.forEach((accountId, history) ->
+            state.put(accountId, new ArrayList<>(history.byVersion.values())));
+        return state;
     }
     
+    /**
+     * Returns the account's whole history in version order. Views that show part of it
+     * should page with {@link #getLatestTransactions}, {@link #getTransactionsBefore} and
+     * {@link #getTransactionsAfter} instead.
+     */
     public List<TransactionRecord> getTransactionsForAccount(String accountId) {
-        List<TransactionRecord> transactions = transactionsByAccount.get(accountId);
-        if (transactions == null) {
+        AccountHistory history = transactionsByAccount.get(accountId);
+        if (history == null) {
             return Collections.emptyList();
         }
         
-        return new ArrayList<>(transactions);
+        return new ArrayList<>(history.byVersion.values());
+    }
+    
+    /**
+     * Returns up to {@code limit} of the account's newest transactions, newest first. The
+     * event version of the last one is the cursor for {@link #getTransactionsBefore}.
+     */
+    public List<TransactionRecord> getLatestTransactions(String accountId, int limit) {
+        return getTransactionsBefore(accountId, Long.MAX_VALUE, limit);
+    }
+    
+    /**
+     * Returns up to {@code limit} transactions with an event version below
+     * {@code beforeVersion}, newest first.
+     */
+    public List<TransactionRecord> getTransactionsBefore(String accountId, long beforeVersion, int limit) {
+        checkLimit(limit);
+        AccountHistory history = transactionsByAccount.get(accountId);
+        if (history == null) {
+            return Collections.emptyList();
+        }
+        return page(history.byVersion.headMap(beforeVersion, false).descendingMap().values(), limit);
+    }
+    
+    /**
+     * Returns up to {@code limit} transactions with an event version above
+     * {@code afterVersion}, oldest first.
+     */
+    public List<TransactionRecord> getTransactionsAfter(String accountId, long afterVersion, int limit) {
+        checkLimit(limit);
+        AccountHistory history = transactionsByAccount.get(accountId);
+        if (history == null) {
+            return Collections.emptyList();
+        }
+        return page(history.byVersion.tailMap(afterVersion, false).values(), limit);
+    }
+    
+    /**
+     * Streams the account's history newest first, lazily from the version index. The
+     * stream is weakly consistent and may include transactions added while it is read.
+     */
+    public Stream<TransactionRecord> streamTransactionsNewestFirst(String accountId) {
+        AccountHistory history = transactionsByAccount.get(accountId);
+        return history == null ? Stream.empty() : history.byVersion.descendingMap().values().stream();
+    }
+    
+    private static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive");
+        }
+    }
+    
+    private static List<TransactionRecord> page(Collection<TransactionRecord> view, int limit) {
+        List<TransactionRecord> page = new ArrayList<>(Math.min(limit, 64));
+        for (TransactionRecord record : view) {
+            page.add(record);
+            if (page.size() == limit) {
+                break;
+            }
+        }
+        return page;
     }
     
+    /**
+     * Returns the account's transactions from {@code fromDate} to {@code toDate} inclusive,
+     * in time order, from the account's time index.
+     */
     public List<TransactionRecord> getTransactionsForAccount(String accountId, Instant fromDate, Instant toDate) {
-        return getTransactionsForAccount(accountId).stream()
-            .filter(transaction -> !transaction.getOccurredAt().isBefore(fromDate) && 
-                                 !transaction.getOccurredAt().isAfter(toDate))
-            .collect(Collectors.toList());
+        AccountHistory history = transactionsByAccount.get(accountId);
+        return history == null ? Collections.emptyList() : inRange(history.byTime, fromDate, toDate);
     }
     
     public TransactionRecord getTransactionById(String transactionId) {
         List<TransactionRecord> list = transactionsById.get(transactionId);
         return (list == null || list.isEmpty()) ? null : list.get(0);
     }
-
+    
     public List<TransactionRecord> getTransactionsById(String transactionId) {
         List<TransactionRecord> list = transactionsById.get(transactionId);
         return list == null ? Collections.emptyList() : new ArrayList<>(list);
     }
     
+    /**
+     * Returns the transactions of one type, in time order, from the type index.
+     */
     public List<TransactionRecord> getTransactionsByType(String transactionType) {
-        return allTransactions.stream()
-            .filter(transaction -> transactionType.equals(transaction.getTransactionType()))
-            .collect(Collectors.toList());
+        ConcurrentSkipListMap<TimeKey, TransactionRecord> byTime = transactionsByType.get(transactionType);
+        return byTime == null ? Collections.emptyList() : new ArrayList<>(byTime.values());
     }
     
+    /**
+     * Returns the transactions from {@code fromDate} to {@code toDate} inclusive, in time
+     * order, from the global time index.
+     */
     public List<TransactionRecord> getTransactionsInDateRange(Instant fromDate, Instant toDate) {
-        return allTransactions.stream()
-            .filter(transaction -> !transaction.getOccurredAt().isBefore(fromDate) && 
-                                 !transaction.getOccurredAt().isAfter(toDate))
-            .collect(Collectors.toList());
+        return inRange(transactionsByTime, fromDate, toDate);
+    }
+    
+    /**
+     * Walks only the entries inside the range, so a query costs O(log n + k). Record times
+     * are whole microseconds, so the lower bound is rounded up and the upper bound down.
+     */
+    private static List<TransactionRecord> inRange(ConcurrentSkipListMap<TimeKey, TransactionRecord> byTime,
+                                                   Instant fromDate, Instant toDate) {
+        long fromMicros = EventClock.toMicros(fromDate) + (fromDate.getNano() % 1_000 == 0 ? 0 : 1);
+        long toMicros = EventClock.toMicros(toDate);
+        if (fromMicros > toMicros) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(byTime.subMap(TimeKey.before(fromMicros), true,
+                TimeKey.after(toMicros), true).values());
     }
     
     public BigDecimal getTotalDepositsForAccount(String accountId) {
-        return getTransactionsForAccount(accountId).stream()
-            .filter(transaction -> "DEPOSIT".equals(transaction.getTransactionType()))
-            .map(TransactionRecord::getAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return getAccountActivity(accountId).getTotalDeposits();
     }
     
     public BigDecimal getTotalWithdrawalsForAccount(String accountId) {
-        return getTransactionsForAccount(accountId).stream()
-            .filter(transaction -> "WITHDRAWAL".equals(transaction.getTransactionType()))
-            .map(TransactionRecord::getAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return getAccountActivity(accountId).getTotalWithdrawals();
     }
     
     public long getTransactionCountForAccount(String accountId) {
-        List<TransactionRecord> transactions = transactionsByAccount.get(accountId);
-        return transactions != null ? transactions.size() : 0;
+        AccountHistory history = transactionsByAccount.get(accountId);
+        return history != null ? history.transactionCount() : 0;
+    }
+    
+    /**
+     * Returns the account's running totals in O(1), without walking its history. An
+     * unknown account has no activity.
+     */
+    public AccountActivity getAccountActivity(String accountId) {
+        AccountHistory history = transactionsByAccount.get(accountId);
+        return history != null ? history.activity() : NO_ACTIVITY;
     }
     
     public long getTotalTransactionCount() {
-        return allTransactions.size();
+        return transactionCount.sum();
+    }
+    
+    /**
+     * All indexes are concurrent, and all but the per-id lists are ordered by version or
+     * time, so a partitioned replay builds the same indexes as a serial one.
+     */
+    @Override
+    public boolean supportsPartitionedReplay() {
+        return true;
     }
     
     @Override
     public boolean isValid() {
-        return allTransactions.stream()
-            .allMatch(transaction -> transaction.getAmount().compareTo(BigDecimal.ZERO) >= 0);
+        return transactionsByTime.values().stream()
+            .allMatch(transaction -> transaction.getAmountMinorUnits() >= 0);
     }
     
     @Override
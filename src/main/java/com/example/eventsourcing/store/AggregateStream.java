@@ -0,0 +1,71 @@
+package com.example.eventsourcing.store;
+
+import java.util.Arrays;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Global sequence numbers of one aggregate's events, in version order.
+ * <p>
+ * Appends are made by a single writer holding the aggregate's stripe lock. The
+ * size and version are published after the positions, so readers that read them
+ * before touching the positions never need a lock.
+ */
+final class AggregateStream {
+    
+    private volatile long[] positions = new long[8];
+    private volatile int size;
+    private volatile long version;
+    
+    void append(long globalSequence, long newVersion) {
+        long[] current = positions;
+        int currentSize = size;
+        if (currentSize == current.length) {
+            current = Arrays.copyOf(current, currentSize * 2);
+            positions = current;
+        }
+        current[currentSize] = globalSequence;
+        size = currentSize + 1;
+        version = newVersion;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    long positionAt(int index) {
+        return positions[index];
+    }
+    
+    long getVersion() {
+        return version;
+    }
+    
+    /**
+     * The index of the first of the first {@code size} entries whose version is at least
+     * {@code version}, or {@code size} if there is none. Stores only accept the next
+     * version, so the entry at index {@code i} has version {@code i + 1} and no event
+     * needs to be read.
+     */
+    static int indexOf(long version, int size) {
+        return version <= 1 ? 0 : (int) Math.min(version - 1, size);
+    }
+    
+    /**
+     * Binary search for the first of the first {@code size} entries whose version is at
+     * least {@code version}, or {@code size} if there is none.
+     */
+    int lowerBound(long version, int size, LongUnaryOperator versionAtPosition) {
+        long[] current = positions;
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (versionAtPosition.applyAsLong(current[mid]) < version) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.eventsourcing.store;
+
+import com.example.eventsourcing.core.ConcurrencyException;
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventStore;
+import com.example.eventsourcing.core.StreamAppend;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+final class AppendChecks {
+    
+    private AppendChecks() {
+    }
+    
+    static void checkEvents(String aggregateId, List<DomainEvent> events) {
+        if (events == null || events.isEmpty()) {
+            throw new IllegalArgumentException("Events list cannot be null or empty");
+        }
+        
+        for (DomainEvent event : events) {
+            if (!aggregateId.equals(event.getAggregateId())) {
+                throw new IllegalArgumentException(
+                    String.format("Event %s belongs to aggregate %s, but expected %s",
+                        event.getEventId(), event.getAggregateId(), aggregateId));
+            }
+        }
+    }
+    
+    static void checkAppends(Map<String, StreamAppend> appends) {
+        if (appends == null || appends.isEmpty()) {
+            throw new IllegalArgumentException("Appends cannot be null or empty");
+        }
+        for (Map.Entry<String, StreamAppend> append : appends.entrySet()) {
+            checkEvents(append.getKey(), append.getValue().getEvents());
+        }
+    }
+    
+    /**
+     * @param isDuplicate usually {@link DeduplicationIndex#isDuplicate(DomainEvent)}
+     * @return {@code true} if every event is a retry of one already stored, in which case
+     *         the append must succeed without writing anything
+     * @throws ConcurrencyException if only some of the events were already stored
+     */
+    static boolean isRetry(String aggregateId, List<DomainEvent> events, Predicate<DomainEvent> isDuplicate) {
+        int duplicates = 0;
+        for (DomainEvent event : events) {
+            if (isDuplicate.test(event)) {
+                duplicates++;
+            }
+        }
+        if (duplicates > 0 && duplicates < events.size()) {
+            throw new ConcurrencyException(aggregateId, String.format(
+                "%d of %d events repeat events that are already stored", duplicates, events.size()));
+        }
+        return duplicates > 0;
+    }
+    
+    /**
+     * Multi-stream form of {@link #isRetry(String, List, Predicate)}: either every stream is
+     * a retry or none may be.
+     */
+    static boolean isRetry(Map<String, StreamAppend> appends, Predicate<DomainEvent> isDuplicate) {
+        int retried = 0;
+        String firstRetried = null;
+        for (Map.Entry<String, StreamAppend> append : appends.entrySet()) {
+            if (isRetry(append.getKey(), append.getValue().getEvents(), isDuplicate)) {
+                retried++;
+                firstRetried = firstRetried == null ? append.getKey() : firstRetried;
+            }
+        }
+        if (retried > 0 && retried < appends.size()) {
+            throw new ConcurrencyException(firstRetried, String.format(
+                "%d of %d streams repeat an append that is already stored", retried, appends.size()));
+        }
+        return retried > 0;
+    }
+    
+    static void checkExpectedVersion(String aggregateId, long expectedVersion, long currentVersion) {
+        if (expectedVersion == EventStore.ANY_VERSION) {
+            return;
+        }
+        if (expectedVersion < EventStore.ANY_VERSION) {
+            throw new IllegalArgumentException("Invalid expected version: " + expectedVersion);
+        }
+        if (expectedVersion != currentVersion) {
+            throw new ConcurrencyException(aggregateId, expectedVersion, currentVersion);
+        }
+    }
+    
+    static void checkEventVersions(String aggregateId, long currentVersion, List<DomainEvent> events) {
+        long nextVersion = currentVersion + 1;
+        for (DomainEvent event : events) {
+            if (event.getAggregateVersion() != nextVersion) {
+                throw new ConcurrencyException(aggregateId, String.format(
+                    "event %s has version %d, but the next version is %d",
+                    event.getEventId(), event.getAggregateVersion(), nextVersion));
+            }
+            nextVersion++;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.eventsourcing.store;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Wakes subscriptions waiting for the global log to grow. Stores call {@link #signalAll()}
+ * after every publish; it costs one volatile read while nobody is waiting.
+ */
+final class AppendSignal {
+    
+    private final Object lock = new Object();
+    private volatile int waiters;
+    
+    void signalAll() {
+        if (waiters > 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Waits until {@code ready} holds, a signal arrives or the timeout expires. The condition
+     * is checked after registering as a waiter, so a publish racing with this call either is
+     * seen by the check or sees the waiter.
+     */
+    void await(BooleanSupplier ready, long timeoutMillis) throws InterruptedException {
+        synchronized (lock) {
+            waiters++;
+            try {
+                if (!ready.getAsBoolean()) {
+                    lock.wait(timeoutMillis);
+                }
+            } finally {
+                waiters--;
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.eventsourcing.store;
+
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventStore;
+import com.example.eventsourcing.core.EventSubscriber;
+import com.example.eventsourcing.core.Subscription;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Subscription that pulls the global log in pages of at most {@code batchSize} events on its
+ * own delivery thread. Catch-up and live delivery are the same loop: once a page comes back
+ * short the subscription is live and sleeps on the store's {@link AppendSignal}.
+ * <p>
+ * Because the subscription pulls, a slow subscriber buffers at most one page and simply
+ * falls behind; appends never block on subscribers.
+ */
+final class CatchUpSubscription implements Subscription {
+    
+    private static final long WAIT_MILLIS = 1000;
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+    
+    private final EventStore store;
+    private final LongSupplier size;
+    private final AppendSignal signal;
+    private final int batchSize;
+    private final EventSubscriber subscriber;
+    private final Thread thread;
+    
+    private volatile long position;
+    private volatile boolean live;
+    private volatile boolean closed;
+    
+    private CatchUpSubscription(EventStore store, LongSupplier size, AppendSignal signal,
+                                long fromPosition, int batchSize, EventSubscriber subscriber) {
+        this.store = store;
+        this.size = size;
+        this.signal = signal;
+        this.position = fromPosition;
+        this.batchSize = batchSize;
+        this.subscriber = subscriber;
+        this.thread = new Thread(this::run, "event-subscription-" + THREAD_IDS.incrementAndGet());
+        this.thread.setDaemon(true);
+    }
+    
+    static Subscription start(EventStore store, LongSupplier size, AppendSignal signal,
+                              long fromPosition, int batchSize, EventSubscriber subscriber) {
+        if (fromPosition < 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Position must not be negative and batch size must be positive");
+        }
+        CatchUpSubscription subscription =
+            new CatchUpSubscription(store, size, signal, fromPosition, batchSize, subscriber);
+        subscription.thread.start();
+        return subscription;
+    }
+    
+    private void run() {
+        try {
+            while (!closed) {
+                List<DomainEvent> page = store.readAllEvents(position, batchSize).join();
+                for (DomainEvent event : page) {
+                    if (closed) {
+                        return;
+                    }
+                    subscriber.onEvent(position, event);
+                    position++;
+                }
+                live = page.size() < batchSize;
+                if (live && !closed) {
+                    signal.await(() -> closed || size.getAsLong() > position, WAIT_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            closed = true;
+            live = false;
+            subscriber.onError(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        }
+    }
+    
+    @Override
+    public long getPosition() {
+        return position;
+    }
+    
+    @Override
+    public boolean isLive() {
+        return live && !closed;
+    }
+    
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        signal.signalAll();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
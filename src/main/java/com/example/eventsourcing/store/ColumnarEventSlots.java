@@ -0,0 +1,382 @@
+package com.example.eventsourcing.store;
+
+import com.example.eventsourcing.codec.EventHeader;
+import com.example.eventsourcing.codec.EventSchema;
+import com.example.eventsourcing.codec.EventTypeRegistry;
+import com.example.eventsourcing.codec.FieldReader;
+import com.example.eventsourcing.codec.FieldWriter;
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventClock;
+import com.example.eventsourcing.core.StringDictionary;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stores events as parallel primitive columns instead of objects, and materializes a
+ * {@link DomainEvent} only when a slot is read.
+ * <p>
+ * Each chunk of {@value #CHUNK_SIZE} slots holds columns for the event id, aggregate
+ * version, occurrence time in epoch microseconds, aggregate id code, type id, schema
+ * version and payload offset. The payload is written through the event's
+ * {@link EventSchema} into a byte heap per chunk. Longs and amounts become zigzag varints
+ * of their value, or of their unscaled value in minor units. Strings are encoded in one of
+ * three ways:
+ * <ul>
+ *   <li>canonical UUID strings, such as transaction ids, are packed into 16 bytes;</li>
+ *   <li>other strings become codes in a bounded {@link StringDictionary};</li>
+ *   <li>free text written with {@link FieldWriter#writeText}, and strings that arrive
+ *   once the dictionary is full, are stored inline as UTF-8.</li>
+ * </ul>
+ * Keeping free text out of the dictionary leaves its entries for the values that repeat,
+ * such as account types and actor names.
+ * Aggregate ids have a dictionary of their own, which is not bounded.
+ * <p>
+ * Slot columns are written without locking, since each slot has a single writer. Only
+ * copying a payload into its chunk's heap takes that chunk's lock.
+ */
+final class ColumnarEventSlots implements EventSlots {
+    
+    static final int DEFAULT_DICTIONARY_CAPACITY = 1 << 16;
+    
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    
+    private static final byte NULL_SCALE = Byte.MIN_VALUE;
+    private static final byte NULL_STRING = 0;
+    private static final byte DICTIONARY_STRING = 1;
+    private static final byte UUID_STRING = 2;
+    private static final byte INLINE_STRING = 3;
+    
+    private static final ThreadLocal<PayloadWriter> WRITER = ThreadLocal.withInitial(PayloadWriter::new);
+    
+    private final EventTypeRegistry registry;
+    private final StringDictionary strings;
+    private final StringDictionary aggregateIds = new StringDictionary(Integer.MAX_VALUE);
+    private volatile Chunk[] chunks = new Chunk[16];
+    
+    ColumnarEventSlots(EventTypeRegistry registry, int dictionaryCapacity) {
+        this.registry = registry;
+        this.strings = new StringDictionary(dictionaryCapacity);
+    }
+    
+    @Override
+    public void ensureCapacity(long requiredSize) {
+        int requiredChunks = (int) ((requiredSize + CHUNK_MASK) >>> CHUNK_SHIFT);
+        Chunk[] current = chunks;
+        if (requiredChunks <= current.length && current[requiredChunks - 1] != null) {
+            return;
+        }
+        synchronized (this) {
+            current = chunks;
+            Chunk[] grown = current;
+            if (requiredChunks > current.length) {
+                grown = Arrays.copyOf(current, Math.max(requiredChunks, current.length * 2));
+            }
+            for (int i = 0; i < requiredChunks; i++) {
+                if (grown[i] == null) {
+                    grown[i] = new Chunk();
+                }
+            }
+            chunks = grown;
+        }
+    }
+    
+    @Override
+    public void checkStorable(List<DomainEvent> events) {
+        for (DomainEvent event : events) {
+            registry.schemaFor(event);
+        }
+    }
+    
+    @Override
+    public void set(long sequence, DomainEvent event) {
+        EventSchema<DomainEvent> schema = registry.schemaFor(event);
+        PayloadWriter out = WRITER.get();
+        out.reset(strings);
+        out.writeLong(null, event.getSequenceNumber() - event.getAggregateVersion());
+        schema.write(event, out);
+        
+        Chunk chunk = chunks[(int) (sequence >>> CHUNK_SHIFT)];
+        int index = (int) (sequence & CHUNK_MASK);
+        chunk.idHigh[index] = event.getEventId().getMostSignificantBits();
+        chunk.idLow[index] = event.getEventId().getLeastSignificantBits();
+        chunk.version[index] = event.getAggregateVersion();
+        chunk.occurredAt[index] = event.getOccurredAtMicros();
+        chunk.aggregate[index] = aggregateIds.encode(event.getAggregateId());
+        chunk.typeId[index] = (char) schema.getTypeId();
+        chunk.schemaVersion[index] = (byte) schema.getVersion();
+        chunk.payload[index] = chunk.append(out.bytes, out.size);
+    }
+    
+    @Override
+    public DomainEvent get(long sequence) {
+        Chunk chunk = chunks[(int) (sequence >>> CHUNK_SHIFT)];
+        int index = (int) (sequence & CHUNK_MASK);
+        PayloadReader in = new PayloadReader(chunk.heap, chunk.payload[index], strings);
+        long version = chunk.version[index];
+        EventHeader header = new EventHeader(
+            new UUID(chunk.idHigh[index], chunk.idLow[index]),
+            aggregateIds.decode(chunk.aggregate[index]),
+            version,
+            EventClock.toInstant(chunk.occurredAt[index]),
+            version + in.readLong(null));
+        return registry.schemaFor(chunk.typeId[index]).read(header, in, Byte.toUnsignedInt(chunk.schemaVersion[index]));
+    }
+    
+    @Override
+    public long aggregateVersion(long sequence) {
+        return chunks[(int) (sequence >>> CHUNK_SHIFT)].version[(int) (sequence & CHUNK_MASK)];
+    }
+    
+    private static final class Chunk {
+        private final long[] idHigh = new long[CHUNK_SIZE];
+        private final long[] idLow = new long[CHUNK_SIZE];
+        private final long[] version = new long[CHUNK_SIZE];
+        private final long[] occurredAt = new long[CHUNK_SIZE];
+        private final int[] aggregate = new int[CHUNK_SIZE];
+        private final int[] payload = new int[CHUNK_SIZE];
+        private final char[] typeId = new char[CHUNK_SIZE];
+        private final byte[] schemaVersion = new byte[CHUNK_SIZE];
+        private volatile byte[] heap = new byte[4096];
+        private int heapSize;
+        private int payloads;
+        
+        /**
+         * Copies a payload into the heap and returns its offset. Once every slot of the
+         * chunk has its payload, the heap is trimmed to size.
+         */
+        synchronized int append(byte[] bytes, int length) {
+            byte[] current = heap;
+            if (heapSize + length > current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length + (current.length >> 1), heapSize + length));
+                heap = current;
+            }
+            int offset = heapSize;
+            System.arraycopy(bytes, 0, current, offset, length);
+            heapSize += length;
+            if (++payloads == CHUNK_SIZE && heapSize < current.length) {
+                heap = Arrays.copyOf(current, heapSize);
+            }
+            return offset;
+        }
+    }
+    
+    private static final class PayloadWriter implements FieldWriter {
+        private byte[] bytes = new byte[256];
+        private int size;
+        private StringDictionary strings;
+        
+        void reset(StringDictionary strings) {
+            this.strings = strings;
+            size = 0;
+        }
+        
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+        
+        private void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+        
+        private void writeFixedLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+        
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+        
+        @Override
+        public void writeString(String name, String value) {
+            writeString(value, true);
+        }
+        
+        @Override
+        public void writeText(String name, String value) {
+            writeString(value, false);
+        }
+        
+        private void writeString(String value, boolean shared) {
+            if (value == null) {
+                writeByte(NULL_STRING);
+                return;
+            }
+            if (writeUuidString(value)) {
+                return;
+            }
+            int code = shared ? strings.encode(value) : StringDictionary.NOT_ENCODED;
+            if (code != StringDictionary.NOT_ENCODED) {
+                writeByte(DICTIONARY_STRING);
+                writeVarLong(code);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeByte(INLINE_STRING);
+            writeVarLong(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+        
+        /**
+         * Packs {@code value} into 16 bytes if it is exactly what {@link UUID#toString()}
+         * produces, so that decoding gives back an equal string.
+         */
+        private boolean writeUuidString(String value) {
+            if (value.length() != 36) {
+                return false;
+            }
+            long high = 0;
+            long low = 0;
+            int digits = 0;
+            for (int i = 0; i < 36; i++) {
+                char c = value.charAt(i);
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    if (c != '-') {
+                        return false;
+                    }
+                    continue;
+                }
+                int digit = c >= '0' && c <= '9' ? c - '0' : c >= 'a' && c <= 'f' ? c - 'a' + 10 : -1;
+                if (digit < 0) {
+                    return false;
+                }
+                if (digits++ < 16) {
+                    high = high << 4 | digit;
+                } else {
+                    low = low << 4 | digit;
+                }
+            }
+            writeByte(UUID_STRING);
+            writeFixedLong(high);
+            writeFixedLong(low);
+            return true;
+        }
+        
+        @Override
+        public void writeLong(String name, long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+        
+        @Override
+        public void writeAmount(String name, BigDecimal value) {
+            if (value == null) {
+                writeByte(NULL_SCALE);
+                return;
+            }
+            int scale = value.scale();
+            if (scale <= NULL_SCALE || scale > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException(name + " has an unsupported scale: " + value);
+            }
+            BigInteger unscaled = value.unscaledValue();
+            if (unscaled.bitLength() > 63) {
+                throw new IllegalArgumentException(name + " does not fit in a scaled long: " + value);
+            }
+            writeByte(scale);
+            writeLong(name, unscaled.longValue());
+        }
+        
+        @Override
+        public void writeAmount(String name, long unscaledValue, int scale) {
+            if (scale <= NULL_SCALE || scale > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException(name + " has an unsupported scale: " + scale);
+            }
+            writeByte(scale);
+            writeLong(name, unscaledValue);
+        }
+    }
+    
+    private static final class PayloadReader implements FieldReader {
+        private final byte[] heap;
+        private final StringDictionary strings;
+        private int position;
+        
+        PayloadReader(byte[] heap, int position, StringDictionary strings) {
+            this.heap = heap;
+            this.position = position;
+            this.strings = strings;
+        }
+        
+        private long readFixedLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | (heap[position++] & 0xFF);
+            }
+            return value;
+        }
+        
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = heap[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varint in columnar payload");
+        }
+        
+        @Override
+        public String readString(String name) {
+            byte kind = heap[position++];
+            switch (kind) {
+                case NULL_STRING:
+                    return null;
+                case DICTIONARY_STRING:
+                    return strings.decode((int) readVarLong());
+                case UUID_STRING:
+                    return new UUID(readFixedLong(), readFixedLong()).toString();
+                case INLINE_STRING:
+                    int length = (int) readVarLong();
+                    String value = new String(heap, position, length, StandardCharsets.UTF_8);
+                    position += length;
+                    return value;
+                default:
+                    throw new IllegalStateException("Unknown string encoding in columnar payload: " + kind);
+            }
+        }
+        
+        @Override
+        public long readLong(String name) {
+            long zigzag = readVarLong();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        
+        @Override
+        public BigDecimal readAmount(String name) {
+            byte scale = heap[position++];
+            if (scale == NULL_SCALE) {
+                return null;
+            }
+            return BigDecimal.valueOf(readLong(name), scale);
+        }
+        
+        @Override
+        public long readAmount(String name, int scale) {
+            if (heap[position] != scale) {
+                return FieldReader.super.readAmount(name, scale);
+            }
+            position++;
+            return readLong(name);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.eventsourcing.store;
+
+import com.example.eventsourcing.core.ConcurrencyException;
+import com.example.eventsourcing.core.DomainEvent;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers the (aggregate id, transaction id) pairs, or for events without a transaction
+ * the event ids, of the most recently stored events, so that an append retried by a
+ * client can be recognised.
+ * <p>
+ * Lookups first consult a Bloom filter, which answers "never seen" without locking for
+ * almost every new event. Only on a possible hit is the exact set checked. The exact set
+ * holds the last {@code window} keys; older keys are forgotten, so the index guards
+ * against retries within that window. Two Bloom filters are kept and rotated every
+ * {@code window} insertions, so every key in the exact set is in one of them and the
+ * false-positive rate never grows with the age of the store.
+ * <p>
+ * Each key maps to the id of the event recorded under it, so that a transaction id reused
+ * by a different event is refused rather than mistaken for a retry.
+ */
+final class DeduplicationIndex {
+    
+    static final int DEFAULT_WINDOW = 100_000;
+    
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASH_FUNCTIONS = 7;
+    
+    private final int window;
+    private final LinkedHashMap<Object, UUID> keys;
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private int insertedSinceRotation;
+    
+    DeduplicationIndex(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Deduplication window must be positive");
+        }
+        this.window = window;
+        this.keys = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, UUID> eldest) {
+                return size() > DeduplicationIndex.this.window;
+            }
+        };
+        this.current = new BloomFilter((long) window * BITS_PER_KEY);
+        this.previous = new BloomFilter((long) window * BITS_PER_KEY);
+    }
+    
+    /**
+     * Whether an event with the same id, or the same transaction on the same aggregate, was
+     * recorded within the window. A retried event carries the same transaction id and event
+     * id as the original, so events with a transaction id are keyed by it alone.
+     *
+     * @throws ConcurrencyException if the transaction was recorded for a different event
+     */
+    boolean isDuplicate(DomainEvent event) {
+        return isDuplicate(event, Collections.emptyMap());
+    }
+    
+    /**
+     * Like {@link #isDuplicate(DomainEvent)}, but also counts the events in {@code pending},
+     * keyed by {@link #keyOf}, which a writer has accepted but not recorded yet.
+     */
+    boolean isDuplicate(DomainEvent event, Map<Object, UUID> pending) {
+        Object key = keyOf(event);
+        UUID recorded = pending.get(key);
+        if (recorded == null) {
+            recorded = recorded(key, hash(key));
+        }
+        if (recorded == null) {
+            return false;
+        }
+        if (!recorded.equals(event.getEventId())) {
+            throw new ConcurrencyException(event.getAggregateId(), String.format(
+                "transaction %s was already stored as event %s, not %s",
+                event.getTransactionId(), recorded, event.getEventId()));
+        }
+        return true;
+    }
+    
+    /**
+     * Records {@code event}; call only once the event is stored.
+     */
+    void record(DomainEvent event) {
+        Object key = keyOf(event);
+        long hash = hash(key);
+        synchronized (keys) {
+            add(key, event.getEventId(), hash);
+        }
+    }
+    
+    static Object keyOf(DomainEvent event) {
+        String transactionId = event.getTransactionId();
+        return transactionId == null ? event.getEventId() : new TransactionKey(event.getAggregateId(), transactionId);
+    }
+    
+    private static long hash(Object key) {
+        return key instanceof TransactionKey ? ((TransactionKey) key).hash() : hash((UUID) key);
+    }
+    
+    private UUID recorded(Object key, long hash) {
+        if (!current.mightContain(hash) && !previous.mightContain(hash)) {
+            return null;
+        }
+        synchronized (keys) {
+            return keys.get(key);
+        }
+    }
+    
+    private void add(Object key, UUID eventId, long hash) {
+        if (keys.put(key, eventId) != null) {
+            return;
+        }
+        if (++insertedSinceRotation > window) {
+            previous = current;
+            current = new BloomFilter((long) window * BITS_PER_KEY);
+            insertedSinceRotation = 1;
+        }
+        current.add(hash);
+    }
+    
+    private static long hash(UUID id) {
+        return mix(id.getMostSignificantBits() ^ Long.rotateLeft(id.getLeastSignificantBits(), 32));
+    }
+    
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    private static final class TransactionKey {
+        private final String aggregateId;
+        private final String transactionId;
+        
+        TransactionKey(String aggregateId, String transactionId) {
+            this.aggregateId = aggregateId;
+            this.transactionId = transactionId;
+        }
+        
+        long hash() {
+            return mix(((long) aggregateId.hashCode() << 32) ^ (transactionId.hashCode() & 0xFFFFFFFFL));
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof TransactionKey)) return false;
+            TransactionKey that = (TransactionKey) obj;
+            return aggregateId.equals(that.aggregateId) && transactionId.equals(that.transactionId);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * aggregateId.hashCode() + transactionId.hashCode();
+        }
+    }
+    
+    /**
+     * Bloom filter over precomputed 64-bit hashes, using double hashing to derive the probes.
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final int bitMask;
+        
+        BloomFilter(long bits) {
+            int wordCount = Integer.highestOneBit((int) Math.max(1, Math.min(1 << 25, (bits + 63) >>> 6)) * 2 - 1);
+            this.words = new AtomicLongArray(wordCount);
+            this.bitMask = (wordCount << 6) - 1;
+        }
+        
+        void add(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                int bit = (h1 + i * h2) & bitMask;
+                int word = bit >>> 6;
+                long mask = 1L << bit;
+                long value;
+                do {
+                    value = words.get(word);
+                } while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask));
+            }
+        }
+        
+        boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                int bit = (h1 + i * h2) & bitMask;
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
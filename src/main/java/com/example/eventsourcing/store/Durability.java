@@ -0,0 +1,24 @@
+package com.example.eventsourcing.store;
+
+/**
+ * When an append to a persistent store is acknowledged.
+ */
+public enum Durability {
+    
+    /**
+     * Acknowledged once the events are visible in memory, before they are written to the log.
+     * A process crash can lose acknowledged events.
+     */
+    MEMORY,
+    
+    /**
+     * Acknowledged once the log write has been handed to the operating system's page cache.
+     * Survives a process crash, but not a power failure.
+     */
+    OS_CACHE,
+    
+    /**
+     * Acknowledged once the log has been flushed to the storage device.
+     */
+    FSYNC
+}
@@ -0,0 +1,31 @@
+package com.example.eventsourcing.store;
+
+import com.example.eventsourcing.core.DomainEvent;
+
+import java.util.List;
+
+/**
+ * Storage behind a {@link GlobalEventLog}, holding the event at each global sequence
+ * number. Every slot is written once by the writer that reserved it and read only after
+ * it has been published.
+ */
+interface EventSlots {
+    
+    void ensureCapacity(long requiredSize);
+    
+    /**
+     * Checks, before any sequence numbers are reserved, that the events can be stored.
+     *
+     * @throws IllegalArgumentException if an event cannot be held in this layout
+     */
+    default void checkStorable(List<DomainEvent> events) {
+    }
+    
+    void set(long sequence, DomainEvent event);
+    
+    DomainEvent get(long sequence);
+    
+    default long aggregateVersion(long sequence) {
+        return get(sequence).getAggregateVersion();
+    }
+}
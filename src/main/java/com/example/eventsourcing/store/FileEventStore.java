@@ -0,0 +1,599 @@
+package com.example.eventsourcing.store;
+
+import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventClock;
+import com.example.eventsourcing.core.EventSerializer;
+import com.example.eventsourcing.core.EventStore;
+import com.example.eventsourcing.core.EventSubscriber;
+import com.example.eventsourcing.core.StreamAppend;
+import com.example.eventsourcing.core.Subscription;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable event store that writes events to fixed-size, preallocated log segments.
+ * <p>
+ * Each record is laid out as:
+ * <pre>
+ *   int  payload length
+ *   int  CRC32 of the payload
+ *   long global sequence number
+ *   long stored-at time (epoch micros, never before the event occurred)
+ *   byte flags ({@code COMMIT} marks the last record of an append)
+ *   ...  payload written by the {@link EventSerializer}
+ * </pre>
+ * Only record locations are kept on the heap. Events are decoded on demand straight
+ * from the memory-mapped segments, and on restart the index is rebuilt by scanning the
+ * segments. Records of an append that was not fully written are discarded.
+ * <p>
+ * Appends go through a {@link GroupCommitWriter}, so concurrent appends share one write
+ * and one flush. The {@link Durability} level decides when their futures complete.
+ * Appends that repeat events already stored are recognised as client retries and
+ * succeed without writing again.
+ */
+public class FileEventStore implements EventStore, Closeable {
+    
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+    
+    static final int HEADER_SIZE = 25;
+    static final byte FLAG_COMMIT = 1;
+    
+    private final Path directory;
+    private final EventSerializer serializer;
+    private final int segmentSize;
+    private final Map<String, AggregateStream> eventsByAggregate = new ConcurrentHashMap<>();
+    private final List<LogSegment> segments = new ArrayList<>();
+    private final GroupCommitWriter<AppendRequest> writer;
+    private final TimeIndex timeIndex = new TimeIndex();
+    private final StoreExecutor executor;
+    private final EventClock clock;
+    private final AppendSignal appendSignal = new AppendSignal();
+    private final DeduplicationIndex deduplication = new DeduplicationIndex(DeduplicationIndex.DEFAULT_WINDOW);
+    
+    private volatile LogSegment[] readableSegments = new LogSegment[0];
+    private volatile long[] locations = new long[1024];
+    private volatile long size;
+    private volatile UnwrittenTail unwrittenTail;
+    
+    private LogSegment activeSegment;
+    private int writeOffset;
+    
+    public FileEventStore(Path directory, EventSerializer serializer) throws IOException {
+        this(directory, serializer, DEFAULT_SEGMENT_SIZE, Durability.FSYNC);
+    }
+    
+    public FileEventStore(Path directory, EventSerializer serializer, int segmentSize) throws IOException {
+        this(directory, serializer, segmentSize, Durability.FSYNC);
+    }
+    
+    public FileEventStore(Path directory, EventSerializer serializer, int segmentSize,
+                          Durability durability) throws IOException {
+        this(directory, serializer, segmentSize, durability, StoreExecutor.synchronous());
+    }
+    
+    /**
+     * @param executor where reads run; appends always run on the group-commit writer thread
+     */
+    public FileEventStore(Path directory, EventSerializer serializer, int segmentSize,
+                          Durability durability, StoreExecutor executor) throws IOException {
+        this(directory, serializer, segmentSize, durability, executor, EventClock.system());
+    }
+    
+    /**
+     * @param clock source of the stored-at times recorded with each event
+     */
+    public FileEventStore(Path directory, EventSerializer serializer, int segmentSize,
+                          Durability durability, StoreExecutor executor, EventClock clock) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size must be larger than the record header");
+        }
+        this.directory = directory;
+        this.serializer = serializer;
+        this.segmentSize = segmentSize;
+        this.executor = executor;
+        this.clock = clock;
+        Files.createDirectories(directory);
+        recover();
+        this.writer = new GroupCommitWriter<>("file-event-store-writer", new SegmentLog(),
+            durability, DEFAULT_MAX_BATCH_SIZE);
+    }
+    
+    @Override
+    public CompletableFuture<Void> appendEvents(String aggregateId, long expectedVersion, List<DomainEvent> events) {
+        try {
+            AppendChecks.checkEvents(aggregateId, events);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return writer.submit(new AppendRequest(
+            Collections.singletonMap(aggregateId, new StreamAppend(expectedVersion, events))));
+    }
+    
+    /**
+     * Stages every stream as one request of the group commit, so they share a commit marker
+     * and recovery keeps all of them or none.
+     */
+    @Override
+    public CompletableFuture<Void> appendEventsAtomically(Map<String, StreamAppend> appends) {
+        try {
+            AppendChecks.checkAppends(appends);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return writer.submit(new AppendRequest(new LinkedHashMap<>(appends)));
+    }
+    
+    public Durability getDurability() {
+        return writer.getDurability();
+    }
+    
+    /**
+     * Average number of appends that shared one log write, a measure of how well group commit is working.
+     */
+    public double getAverageBatchSize() {
+        long batches = writer.getBatchCount();
+        return batches == 0 ? 0 : (double) writer.getRequestCount() / batches;
+    }
+    
+    public StoreExecutor.LatencyStats getLatencyStats() {
+        return executor.getLatencyStats();
+    }
+    
+    private static final class AppendRequest {
+        private final Map<String, StreamAppend> appends;
+        
+        private AppendRequest(Map<String, StreamAppend> appends) {
+            this.appends = appends;
+        }
+    }
+    
+    /**
+     * Events that readers can see but whose records are not written yet ({@link Durability#MEMORY}).
+     */
+    private static final class UnwrittenTail {
+        private final long firstSequence;
+        private final DomainEvent[] events;
+        
+        private UnwrittenTail(long firstSequence, DomainEvent[] events) {
+            this.firstSequence = firstSequence;
+            this.events = events;
+        }
+    }
+    
+    /**
+     * Writer-thread side of the store: encodes staged appends into per-segment chunks.
+     */
+    private final class SegmentLog implements GroupCommitWriter.BatchLog<AppendRequest> {
+        
+        private final Map<String, Long> stagedVersions = new HashMap<>();
+        private final List<DomainEvent> stagedEvents = new ArrayList<>();
+        private final List<Long> stagedLocations = new ArrayList<>();
+        private final List<Long> stagedTimes = new ArrayList<>();
+        private final List<LogSegment> chunkSegments = new ArrayList<>();
+        private final List<Integer> chunkOffsets = new ArrayList<>();
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private final Set<LogSegment> unsynced = new LinkedHashSet<>();
+        private final List<DomainEvent> unrecorded = new ArrayList<>();
+        private final Map<Object, UUID> unrecordedKeys = new HashMap<>();
+        private final CRC32 crc = new CRC32();
+        private long stagedSize = size;
+        private ByteBuffer chunk;
+        
+        @Override
+        public void stage(AppendRequest request) {
+            if (AppendChecks.isRetry(request.appends, event -> deduplication.isDuplicate(event, unrecordedKeys))) {
+                return;
+            }
+            
+            List<DomainEvent> events = new ArrayList<>();
+            for (Map.Entry<String, StreamAppend> append : request.appends.entrySet()) {
+                String aggregateId = append.getKey();
+                long currentVersion = currentVersion(aggregateId);
+                AppendChecks.checkExpectedVersion(aggregateId, append.getValue().getExpectedVersion(), currentVersion);
+                AppendChecks.checkEventVersions(aggregateId, currentVersion, append.getValue().getEvents());
+                events.addAll(append.getValue().getEvents());
+            }
+            
+            List<byte[]> payloads = new ArrayList<>(events.size());
+            for (DomainEvent event : events) {
+                byte[] payload = serializer.serialize(event);
+                if (payload.length > segmentSize - HEADER_SIZE) {
+                    throw new IllegalArgumentException(String.format(
+                        "Event %s needs %d bytes, but segments hold at most %d",
+                        event.getEventId(), payload.length, segmentSize - HEADER_SIZE));
+                }
+                payloads.add(payload);
+            }
+            
+            long storedAt = clock.currentTimeMicros();
+            for (DomainEvent event : events) {
+                storedAt = Math.max(storedAt, event.getOccurredAtMicros());
+            }
+            for (int i = 0; i < payloads.size(); i++) {
+                byte[] payload = payloads.get(i);
+                int recordSize = HEADER_SIZE + payload.length;
+                if (writeOffset + recordSize > segmentSize) {
+                    closeChunk();
+                    try {
+                        rollSegment();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                if (chunk == null) {
+                    chunk = ByteBuffer.allocate(Math.max(4096, recordSize));
+                    chunkSegments.add(activeSegment);
+                    chunkOffsets.add(writeOffset);
+                } else if (chunk.remaining() < recordSize) {
+                    ByteBuffer grown = ByteBuffer.allocate(Math.max(chunk.capacity() * 2, chunk.position() + recordSize));
+                    chunk.flip();
+                    grown.put(chunk);
+                    chunk = grown;
+                }
+                
+                crc.reset();
+                crc.update(payload);
+                chunk.putInt(payload.length);
+                chunk.putInt((int) crc.getValue());
+                chunk.putLong(stagedSize);
+                chunk.putLong(storedAt);
+                chunk.put(i == payloads.size() - 1 ? FLAG_COMMIT : 0);
+                chunk.put(payload);
+                
+                stagedEvents.add(events.get(i));
+                stagedLocations.add(location(activeSegment.getIndex(), writeOffset));
+                stagedTimes.add(storedAt);
+                writeOffset += recordSize;
+                stagedSize++;
+            }
+            for (DomainEvent event : events) {
+                unrecorded.add(event);
+                unrecordedKeys.put(DeduplicationIndex.keyOf(event), event.getEventId());
+            }
+            for (Map.Entry<String, StreamAppend> append : request.appends.entrySet()) {
+                stagedVersions.put(append.getKey(), currentVersion(append.getKey()) + append.getValue().getEvents().size());
+            }
+        }
+        
+        private long currentVersion(String aggregateId) {
+            Long stagedVersion = stagedVersions.get(aggregateId);
+            if (stagedVersion != null) {
+                return stagedVersion;
+            }
+            AggregateStream stream = eventsByAggregate.get(aggregateId);
+            return stream == null ? 0 : stream.getVersion();
+        }
+        
+        private void closeChunk() {
+            if (chunk != null) {
+                chunk.flip();
+                chunks.add(chunk);
+                chunk = null;
+            }
+        }
+        
+        @Override
+        public void publish() {
+            closeChunk();
+            long firstSequence = size;
+            if (!chunks.isEmpty()) {
+                unwrittenTail = new UnwrittenTail(firstSequence, stagedEvents.toArray(new DomainEvent[0]));
+            }
+            for (int i = 0; i < stagedEvents.size(); i++) {
+                DomainEvent event = stagedEvents.get(i);
+                addLocation(firstSequence + i, stagedLocations.get(i));
+                timeIndex.record(firstSequence + i, 1, stagedTimes.get(i));
+                eventsByAggregate.computeIfAbsent(event.getAggregateId(), k -> new AggregateStream())
+                    .append(firstSequence + i, event.getAggregateVersion());
+            }
+            size = firstSequence + stagedEvents.size();
+            appendSignal.signalAll();
+            stagedEvents.clear();
+            stagedLocations.clear();
+            stagedTimes.clear();
+            stagedVersions.clear();
+        }
+        
+        @Override
+        public void write() throws IOException {
+            closeChunk();
+            for (int i = 0; i < chunks.size(); i++) {
+                chunkSegments.get(i).write(chunks.get(i), chunkOffsets.get(i));
+                unsynced.add(chunkSegments.get(i));
+            }
+            chunks.clear();
+            chunkSegments.clear();
+            chunkOffsets.clear();
+            unwrittenTail = null;
+            
+            // Only events that reached the log count as stored when a retry arrives
+            unrecorded.forEach(deduplication::record);
+            unrecorded.clear();
+            unrecordedKeys.clear();
+        }
+        
+        @Override
+        public void sync() throws IOException {
+            for (LogSegment segment : unsynced) {
+                segment.sync();
+            }
+            unsynced.clear();
+        }
+    }
+    
+    private void rollSegment() throws IOException {
+        LogSegment next = LogSegment.open(directory, activeSegment.getIndex() + 1, segmentSize);
+        addSegment(next);
+        activeSegment = next;
+        writeOffset = 0;
+    }
+    
+    private void addSegment(LogSegment segment) {
+        segments.add(segment);
+        readableSegments = segments.toArray(new LogSegment[0]);
+    }
+    
+    private void addLocation(long sequence, long location) {
+        long[] current = locations;
+        if (sequence >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            locations = current;
+        }
+        current[(int) sequence] = location;
+    }
+    
+    private static long location(int segmentIndex, int offset) {
+        return ((long) segmentIndex << 32) | (offset & 0xFFFFFFFFL);
+    }
+    
+    DomainEvent read(long sequence) {
+        UnwrittenTail tail = unwrittenTail;
+        if (tail != null && sequence >= tail.firstSequence && sequence - tail.firstSequence < tail.events.length) {
+            return tail.events[(int) (sequence - tail.firstSequence)];
+        }
+        long location = locations[(int) sequence];
+        LogSegment segment = readableSegments[(int) (location >>> 32)];
+        int offset = (int) location;
+        int length = segment.getInt(offset);
+        return serializer.deserialize(segment.slice(offset + HEADER_SIZE, length));
+    }
+    
+    private List<DomainEvent> readStream(AggregateStream stream, int fromIndex, int toIndex) {
+        List<DomainEvent> events = new ArrayList<>(toIndex - fromIndex);
+        for (int i = fromIndex; i < toIndex; i++) {
+            events.add(read(stream.positionAt(i)));
+        }
+        return events;
+    }
+    
+    @Override
+    public CompletableFuture<List<DomainEvent>> getEvents(String aggregateId) {
+        return executor.supply(() -> {
+            AggregateStream stream = eventsByAggregate.get(aggregateId);
+            if (stream == null) {
+                return Collections.emptyList();
+            }
+            
+            return readStream(stream, 0, stream.size());
+        });
+    }
+    
+    @Override
+    public CompletableFuture<List<DomainEvent>> getEventsFromVersion(String aggregateId, long fromVersion) {
+        if (fromVersion == Long.MAX_VALUE) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return getEventsInRange(aggregateId, fromVersion + 1, Long.MAX_VALUE);
+    }
+    
+    @Override
+    public CompletableFuture<List<DomainEvent>> getEventsInRange(String aggregateId, long fromVersion, long toVersion) {
+        return executor.supply(() -> {
+            AggregateStream stream = eventsByAggregate.get(aggregateId);
+            if (stream == null || fromVersion > toVersion) {
+                return Collections.emptyList();
+            }
+            
+            int size = stream.size();
+            int from = AggregateStream.indexOf(fromVersion, size);
+            int to = toVersion == Long.MAX_VALUE ? size : AggregateStream.indexOf(toVersion + 1, size);
+            return readStream(stream, from, to);
+        });
+    }
+    
+    @Override
+    public CompletableFuture<Long> getCurrentVersion(String aggregateId) {
+        return executor.supply(() -> {
+            AggregateStream stream = eventsByAggregate.get(aggregateId);
+            if (stream == null || stream.size() == 0) {
+                return NO_STREAM;
+            }
+            
+            return stream.getVersion();
+        });
+    }
+    
+    @Override
+    public CompletableFuture<List<DomainEvent>> getAllEvents() {
+        return executor.supply(() -> {
+            long total = size;
+            List<DomainEvent> events = new ArrayList<>((int) total);
+            for (long i = 0; i < total; i++) {
+                events.add(read(i));
+            }
+            return events;
+        });
+    }
+    
+    @Override
+    public CompletableFuture<List<DomainEvent>> readAllEvents(long fromPosition, int maxCount) {
+        if (fromPosition < 0 || maxCount <= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                "Position must not be negative and max count must be positive"));
+        }
+        return executor.supply(() -> {
+            long end = Math.min(size, fromPosition + maxCount);
+            List<DomainEvent> events = new ArrayList<>((int) Math.max(0, end - fromPosition));
+            for (long i = fromPosition; i < end; i++) {
+                events.add(read(i));
+            }
+            return events;
+        });
+    }
+    
+    @Override
+    public Subscription subscribe(long fromPosition, int batchSize, EventSubscriber subscriber) {
+        return CatchUpSubscription.start(this, () -> size, appendSignal, fromPosition, batchSize, subscriber);
+    }
+    
+    @Override
+    public CompletableFuture<List<DomainEvent>> getEventsFromTime(Instant fromTime) {
+        return executor.supply(() -> {
+            long total = size;
+            long fromMicros = EventClock.toMicros(fromTime);
+            List<DomainEvent> events = new ArrayList<>();
+            for (long i = timeIndex.startPosition(fromMicros); i < total; i++) {
+                DomainEvent event = read(i);
+                if (event.getOccurredAtMicros() >= fromMicros) {
+                    events.add(event);
+                }
+            }
+            return events;
+        });
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> aggregateExists(String aggregateId) {
+        return executor.supply(() -> {
+            AggregateStream stream = eventsByAggregate.get(aggregateId);
+            return stream != null && stream.size() > 0;
+        });
+    }
+    
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Commits every pending append, flushes the log and releases the segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        IOException failure = null;
+        for (LogSegment segment : segments) {
+            try {
+                segment.sync();
+                segment.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(LogSegment::isSegmentFile)
+                .sorted(Comparator.comparingInt(LogSegment::indexOf))
+                .collect(Collectors.toList());
+        }
+        
+        List<long[]> pending = new ArrayList<>();
+        List<DomainEvent> pendingEvents = new ArrayList<>();
+        LogSegment committedSegment = null;
+        int committedEnd = 0;
+        CRC32 crc = new CRC32();
+        
+        scan:
+        for (Path file : files) {
+            int index = LogSegment.indexOf(file);
+            if (index != segments.size()) {
+                break;
+            }
+            LogSegment segment = LogSegment.open(directory, index, segmentSize);
+            addSegment(segment);
+            
+            int offset = 0;
+            while (offset + HEADER_SIZE <= segment.capacity()) {
+                int length = segment.getInt(offset);
+                if (length <= 0 || offset + HEADER_SIZE + length > segment.capacity()) {
+                    break;
+                }
+                ByteBuffer payload = segment.slice(offset + HEADER_SIZE, length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                long sequence = segment.getLong(offset + 8);
+                if ((int) crc.getValue() != segment.getInt(offset + 4) || sequence != size + pending.size()) {
+                    break scan;
+                }
+                
+                pending.add(new long[] {sequence, location(index, offset), segment.getLong(offset + 16)});
+                pendingEvents.add(serializer.deserialize(payload));
+                offset += HEADER_SIZE + length;
+                
+                if ((segment.get(offset - length - 1) & FLAG_COMMIT) != 0) {
+                    for (int i = 0; i < pending.size(); i++) {
+                        DomainEvent event = pendingEvents.get(i);
+                        deduplication.record(event);
+                        addLocation(pending.get(i)[0], pending.get(i)[1]);
+                        timeIndex.record(pending.get(i)[0], 1, pending.get(i)[2]);
+                        eventsByAggregate.computeIfAbsent(event.getAggregateId(), k -> new AggregateStream())
+                            .append(pending.get(i)[0], event.getAggregateVersion());
+                    }
+                    size += pending.size();
+                    pending.clear();
+                    pendingEvents.clear();
+                    committedSegment = segment;
+                    committedEnd = offset;
+                }
+            }
+        }
+        
+        if (segments.isEmpty()) {
+            addSegment(LogSegment.open(directory, 0, segmentSize));
+        }
+        if (committedSegment == null) {
+            committedSegment = segments.get(0);
+        }
+        truncateAfter(committedSegment, committedEnd);
+        
+        for (Path file : files) {
+            if (LogSegment.indexOf(file) >= segments.size()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        activeSegment = committedSegment;
+        writeOffset = committedEnd;
+    }
+    
+    /**
+     * Drops everything written after the last committed record, including later segments.
+     */
+    private void truncateAfter(LogSegment segment, int offset) throws IOException {
+        segment.zero(offset, segment.capacity());
+        segment.force();
+        while (segments.size() > segment.getIndex() + 1) {
+            LogSegment removed = segments.remove(segments.size() - 1);
+            removed.close();
+            Files.deleteIfExists(removed.getPath());
+        }
+        readableSegments = segments.toArray(new LogSegment[0]);
+    }
+}
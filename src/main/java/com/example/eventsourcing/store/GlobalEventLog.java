@@ -0,0 +1,81 @@
+package com.example.eventsourcing.store;
+
+import com.example.eventsourcing.core.DomainEvent;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log of every stored event, indexed by global sequence number.
+ * <p>
+ * Writers reserve a contiguous range of sequence numbers, fill their slots and then
+ * publish the range in reservation order. Readers never lock: they only see slots
+ * below the published watermark, so a partially written batch is never observed. How the
+ * events themselves are held is up to the log's {@link EventSlots}.
+ */
+final class GlobalEventLog {
+    
+    private static final int SPINS_BEFORE_YIELD = 100;
+    
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final TimeIndex timeIndex = new TimeIndex();
+    private final EventSlots slots;
+    private volatile long published;
+    
+    GlobalEventLog(EventSlots slots) {
+        this.slots = slots;
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the events cannot be held by this log's slots
+     */
+    void checkStorable(List<DomainEvent> events) {
+        slots.checkStorable(events);
+    }
+    
+    long reserve(int count) {
+        long first = nextSequence.getAndAdd(count);
+        slots.ensureCapacity(first + count);
+        return first;
+    }
+    
+    void set(long sequence, DomainEvent event) {
+        slots.set(sequence, event);
+    }
+    
+    /**
+     * Makes {@code [first, first + count)} visible to readers once every earlier
+     * reservation has been published.
+     */
+    void publish(long first, int count, long storedAtMicros) {
+        int spins = 0;
+        while (published != first) {
+            if (++spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        timeIndex.record(first, count, storedAtMicros);
+        published = first + count;
+    }
+    
+    /**
+     * Returns a position such that every event before it occurred before {@code micros}.
+     */
+    long startPosition(long micros) {
+        return timeIndex.startPosition(micros);
+    }
+    
+    long size() {
+        return published;
+    }
+    
+    DomainEvent get(long sequence) {
+        return slots.get(sequence);
+    }
+    
+    long aggregateVersion(long sequence) {
+        return slots.aggregateVersion(sequence);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.eventsourcing.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent append requests into batches that share one log write and one flush.
+ * <p>
+ * A single writer thread drains the queue. Each request is staged on its own, so a
+ * failed request (for example a version conflict) only fails its own future. The rest
+ * of the batch is written together and every future is completed at the point chosen
+ * by the {@link Durability} level.
+ *
+ * @param <T> the append request type understood by the {@link BatchLog}
+ */
+public class GroupCommitWriter<T> implements AutoCloseable {
+    
+    /**
+     * The log written by a {@link GroupCommitWriter}. All methods are called from the writer thread.
+     */
+    public interface BatchLog<T> {
+        
+        /**
+         * Validates and buffers one request. Throwing rejects only this request, except for
+         * an {@link UncheckedIOException}, which fails the writer.
+         */
+        void stage(T request);
+        
+        /**
+         * Makes every staged request visible to readers.
+         */
+        void publish();
+        
+        /**
+         * Writes every staged request to the log.
+         */
+        void write() throws IOException;
+        
+        /**
+         * Flushes written data to the storage device.
+         */
+        void sync() throws IOException;
+    }
+    
+    private static final Object SHUTDOWN = new Object();
+    
+    private final BatchLog<T> log;
+    private final Durability durability;
+    private final int maxBatchSize;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    /**
+     * Held while checking {@link #closed} and enqueueing, so that no request can be queued
+     * behind the shutdown marker, where the writer would never see it.
+     */
+    private final Object submitLock = new Object();
+    private final Thread writerThread;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    
+    public GroupCommitWriter(String name, BatchLog<T> log, Durability durability, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Max batch size must be positive");
+        }
+        this.log = log;
+        this.durability = durability;
+        this.maxBatchSize = maxBatchSize;
+        this.writerThread = new Thread(this::run, name);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+    
+    public CompletableFuture<Void> submit(T request) {
+        PendingAppend<T> pending = new PendingAppend<>(request);
+        synchronized (submitLock) {
+            if (closed) {
+                pending.future.completeExceptionally(new IllegalStateException("Writer is closed"));
+            } else if (failure != null) {
+                pending.future.completeExceptionally(failure);
+            } else {
+                queue.add(pending);
+            }
+        }
+        return pending.future;
+    }
+    
+    public Durability getDurability() {
+        return durability;
+    }
+    
+    public long getBatchCount() {
+        return batches.get();
+    }
+    
+    public long getRequestCount() {
+        return requests.get();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void run() {
+        List<Object> drained = new ArrayList<>(maxBatchSize);
+        boolean running = true;
+        while (running) {
+            drained.clear();
+            try {
+                drained.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(drained, maxBatchSize - 1);
+            
+            List<PendingAppend<T>> batch = new ArrayList<>(drained.size());
+            for (Object item : drained) {
+                if (item == SHUTDOWN) {
+                    running = false;
+                } else {
+                    batch.add((PendingAppend<T>) item);
+                }
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+            }
+        }
+        
+        for (Object item : queue) {
+            if (item != SHUTDOWN) {
+                ((PendingAppend<T>) item).future.completeExceptionally(new IllegalStateException("Writer is closed"));
+            }
+        }
+    }
+    
+    private void commit(List<PendingAppend<T>> batch) {
+        List<PendingAppend<T>> staged = new ArrayList<>(batch.size());
+        try {
+            for (PendingAppend<T> pending : batch) {
+                if (failure != null) {
+                    pending.future.completeExceptionally(failure);
+                    continue;
+                }
+                try {
+                    log.stage(pending.request);
+                    staged.add(pending);
+                } catch (UncheckedIOException e) {
+                    staged.add(pending);
+                    throw e;
+                } catch (RuntimeException e) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+            if (staged.isEmpty()) {
+                return;
+            }
+            
+            if (durability == Durability.MEMORY) {
+                log.publish();
+                complete(staged);
+                log.write();
+            } else {
+                log.write();
+                if (durability == Durability.FSYNC) {
+                    log.sync();
+                }
+                log.publish();
+                complete(staged);
+            }
+            batches.incrementAndGet();
+            requests.addAndGet(staged.size());
+        } catch (IOException | RuntimeException e) {
+            // The log may now be partially written; refuse further appends
+            failure = e instanceof IOException ? new UncheckedIOException((IOException) e) : e;
+            for (PendingAppend<T> pending : batch) {
+                pending.future.completeExceptionally(failure);
+            }
+        }
+    }
+    
+    private static <T> void complete(List<PendingAppend<T>> staged) {
+        for (PendingAppend<T> pending : staged) {
+            pending.future.complete(null);
+        }
+    }
+    
+    /**
+     * Stops accepting requests and waits until every queued request has been committed.
+     */
+    @Override
+    public void close() {
+        synchronized (submitLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(SHUTDOWN);
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static final class PendingAppend<T> {
+        private final T request;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        
+        private PendingAppend(T request) {
+            this.request = request;
+        }
+    }
+}
@@ -1,163 +1,341 @@
 package com.example.eventsourcing.store;
 
+import com.example.eventsourcing.codec.EventTypeRegistry;
 import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventClock;
 import com.example.eventsourcing.core.EventStore;
+import com.example.eventsourcing.core.EventSubscriber;
+import com.example.eventsourcing.core.StreamAppend;
+import com.example.eventsourcing.core.Subscription;
 
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+/**
+ * Thread-safe in-memory event store.
+ * <p>
+ * Appends are serialized per aggregate through a fixed set of lock stripes, so
+ * writers to different aggregates proceed in parallel. A multi-stream append takes only
+ * the stripes of its own aggregates.
+ * <p>
+ * An append whose events were all stored before, by event id or by transaction id on the
+ * same aggregate, is treated as a client retry and succeeds without writing again. All reads are lock-free, and
+ * per-aggregate reads return views over the stored stream instead of copies.
+ * <p>
+ * Operations run on the caller's thread by default; pass a {@link StoreExecutor} to
+ * move them elsewhere. Store times come from the given {@link EventClock}, by default
+ * {@link EventClock#system()}.
+ * <p>
+ * A store created with {@link #columnar} keeps events in primitive columns with
+ * dictionary-encoded strings rather than as objects. It holds several times more events
+ * per heap and leaves the collector few objects to trace, but it builds a new event
+ * object on every read.
+ */
 public class InMemoryEventStore implements EventStore {
     
-    private final Map<String, List<StoredEvent>> eventsByAggregate;
-    private final List<StoredEvent> allEvents;
+    private static final int DEFAULT_STRIPES = 64;
     
-    private static class StoredEvent {
-        private final DomainEvent event;
-        private final long globalSequenceNumber;
-        private final Instant storedAt;
-        
-        public StoredEvent(DomainEvent event, long globalSequenceNumber, Instant storedAt) {
-            this.event = event;
-            this.globalSequenceNumber = globalSequenceNumber;
-            this.storedAt = storedAt;
-        }
-        
-        public DomainEvent getEvent() {
-            return event;
-        }
-        
-        public long getGlobalSequenceNumber() {
-            return globalSequenceNumber;
-        }
-        
-        public Instant getStoredAt() {
-            return storedAt;
-        }
-    }
+    private final Map<String, AggregateStream> eventsByAggregate;
+    private final GlobalEventLog allEvents;
+    private final Object[] stripes;
+    private final int stripeMask;
+    private final StoreExecutor executor;
+    private final EventClock clock;
+    private final AppendSignal appendSignal = new AppendSignal();
+    private final DeduplicationIndex deduplication = new DeduplicationIndex(DeduplicationIndex.DEFAULT_WINDOW);
     
     public InMemoryEventStore() {
-        this.eventsByAggregate = new HashMap<>();
-        this.allEvents = new ArrayList<>();
+        this(StoreExecutor.synchronous());
+    }
+    
+    public InMemoryEventStore(StoreExecutor executor) {
+        this(Math.max(DEFAULT_STRIPES, Runtime.getRuntime().availableProcessors() * 4), executor);
+    }
+    
+    public InMemoryEventStore(int stripeCount, StoreExecutor executor) {
+        this(stripeCount, executor, EventClock.system());
+    }
+    
+    public InMemoryEventStore(int stripeCount, StoreExecutor executor, EventClock clock) {
+        this(stripeCount, executor, clock, new ObjectEventSlots());
+    }
+    
+    /**
+     * Creates a store with the columnar layout. Only events whose classes are registered in
+     * {@code registry} can be appended; the others are rejected with an
+     * {@link IllegalArgumentException}.
+     */
+    public static InMemoryEventStore columnar(EventTypeRegistry registry) {
+        return columnar(registry, Math.max(DEFAULT_STRIPES, Runtime.getRuntime().availableProcessors() * 4),
+            StoreExecutor.synchronous(), EventClock.system());
+    }
+    
+    public static InMemoryEventStore columnar(EventTypeRegistry registry, int stripeCount,
+                                              StoreExecutor executor, EventClock clock) {
+        return new InMemoryEventStore(stripeCount, executor, clock,
+            new ColumnarEventSlots(registry, ColumnarEventSlots.DEFAULT_DICTIONARY_CAPACITY));
+    }
+    
+    private InMemoryEventStore(int stripeCount, StoreExecutor executor, EventClock clock, EventSlots slots) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        int size = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.eventsByAggregate = new ConcurrentHashMap<>();
+        this.allEvents = new GlobalEventLog(slots);
+        this.stripes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Object();
+        }
+        this.stripeMask = size - 1;
+        this.executor = executor;
+        this.clock = clock;
     }
     
     @Override
     public CompletableFuture<Void> appendEvents(String aggregateId, long expectedVersion, List<DomainEvent> events) {
-        return CompletableFuture.runAsync(() -> {
-            if (events == null || events.isEmpty()) {
-                throw new IllegalArgumentException("Events list cannot be null or empty");
-            }
+        return executor.run(() -> {
+            AppendChecks.checkEvents(aggregateId, events);
+            allEvents.checkStorable(events);
             
-            for (DomainEvent event : events) {
-                if (!aggregateId.equals(event.getAggregateId())) {
-                    throw new IllegalArgumentException(
-                        String.format("Event %s belongs to aggregate %s, but expected %s",
-                            event.getEventId(), event.getAggregateId(), aggregateId));
+            synchronized (stripes[stripeIndex(aggregateId)]) {
+                if (AppendChecks.isRetry(aggregateId, events, deduplication::isDuplicate)) {
+                    return;
                 }
+                AggregateStream stream = checkedStream(aggregateId, expectedVersion, events);
+                long firstSequence = allEvents.reserve(events.size());
+                long storedAt = storedAt(events);
+                store(stream, firstSequence, events);
+                allEvents.publish(firstSequence, events.size(), storedAt);
             }
-            
-            List<StoredEvent> aggregateEvents = eventsByAggregate.computeIfAbsent(aggregateId, 
-                k -> new ArrayList<>());
-            
-            long globalSequence = allEvents.size();
-            Instant storedAt = Instant.now();
-            
-            for (DomainEvent event : events) {
-                StoredEvent storedEvent = new StoredEvent(event, globalSequence++, storedAt);
-                aggregateEvents.add(storedEvent);
-                allEvents.add(storedEvent);
+            appendSignal.signalAll();
+        });
+    }
+    
+    /**
+     * Locks only the stripes of the aggregates involved, in ascending order so that
+     * concurrent multi-stream appends cannot deadlock, then checks every stream before
+     * storing any of them under one reserved range of global positions.
+     */
+    @Override
+    public CompletableFuture<Void> appendEventsAtomically(Map<String, StreamAppend> appends) {
+        return executor.run(() -> {
+            AppendChecks.checkAppends(appends);
+            for (StreamAppend append : appends.values()) {
+                allEvents.checkStorable(append.getEvents());
             }
+            
+            int[] stripeIndexes = appends.keySet().stream()
+                .mapToInt(this::stripeIndex)
+                .sorted()
+                .distinct()
+                .toArray();
+            withStripes(stripeIndexes, 0, () -> {
+                if (AppendChecks.isRetry(appends, deduplication::isDuplicate)) {
+                    return;
+                }
+                
+                List<AggregateStream> streams = new ArrayList<>(appends.size());
+                List<DomainEvent> events = new ArrayList<>();
+                for (Map.Entry<String, StreamAppend> append : appends.entrySet()) {
+                    StreamAppend streamAppend = append.getValue();
+                    streams.add(checkedStream(append.getKey(), streamAppend.getExpectedVersion(),
+                        streamAppend.getEvents()));
+                    events.addAll(streamAppend.getEvents());
+                }
+                
+                long firstSequence = allEvents.reserve(events.size());
+                long sequence = firstSequence;
+                long storedAt = storedAt(events);
+                int i = 0;
+                for (StreamAppend streamAppend : appends.values()) {
+                    store(streams.get(i++), sequence, streamAppend.getEvents());
+                    sequence += streamAppend.getEvents().size();
+                }
+                allEvents.publish(firstSequence, events.size(), storedAt);
+            });
+            appendSignal.signalAll();
         });
     }
     
+    private void withStripes(int[] stripeIndexes, int next, Runnable action) {
+        if (next == stripeIndexes.length) {
+            action.run();
+            return;
+        }
+        synchronized (stripes[stripeIndexes[next]]) {
+            withStripes(stripeIndexes, next + 1, action);
+        }
+    }
+    
+    /**
+     * Checks an append against the current stream, creating the stream if the aggregate is
+     * new. Must be called holding the aggregate's stripe.
+     */
+    private AggregateStream checkedStream(String aggregateId, long expectedVersion, List<DomainEvent> events) {
+        AggregateStream stream = eventsByAggregate.get(aggregateId);
+        long currentVersion = stream == null ? 0 : stream.getVersion();
+        AppendChecks.checkExpectedVersion(aggregateId, expectedVersion, currentVersion);
+        AppendChecks.checkEventVersions(aggregateId, currentVersion, events);
+        return stream;
+    }
+    
+    private void store(AggregateStream stream, long firstSequence, List<DomainEvent> events) {
+        if (stream == null) {
+            stream = new AggregateStream();
+            eventsByAggregate.put(events.get(0).getAggregateId(), stream);
+        }
+        long globalSequence = firstSequence;
+        for (DomainEvent event : events) {
+            allEvents.set(globalSequence, event);
+            stream.append(globalSequence++, event.getAggregateVersion());
+            deduplication.record(event);
+        }
+    }
+    
+    /**
+     * The store time of a batch, never earlier than any of its events occurred, which the
+     * time index relies on.
+     */
+    private long storedAt(List<DomainEvent> events) {
+        long storedAt = clock.currentTimeMicros();
+        for (DomainEvent event : events) {
+            storedAt = Math.max(storedAt, event.getOccurredAtMicros());
+        }
+        return storedAt;
+    }
+    
+    private int stripeIndex(String aggregateId) {
+        int h = aggregateId.hashCode();
+        return (h ^ (h >>> 16)) & stripeMask;
+    }
+    
     @Override
     public CompletableFuture<List<DomainEvent>> getEvents(String aggregateId) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<StoredEvent> storedEvents = eventsByAggregate.get(aggregateId);
-            if (storedEvents == null) {
+        return executor.supply(() -> {
+            AggregateStream stream = eventsByAggregate.get(aggregateId);
+            if (stream == null) {
                 return Collections.emptyList();
             }
             
-            return storedEvents.stream()
-                .map(StoredEvent::getEvent)
-                .collect(Collectors.toList());
+            return slice(stream, 0, stream.size());
         });
     }
     
     @Override
     public CompletableFuture<List<DomainEvent>> getEventsFromVersion(String aggregateId, long fromVersion) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<StoredEvent> storedEvents = eventsByAggregate.get(aggregateId);
-            if (storedEvents == null) {
+        return executor.supply(() -> {
+            AggregateStream stream = eventsByAggregate.get(aggregateId);
+            if (stream == null || fromVersion == Long.MAX_VALUE) {
                 return Collections.emptyList();
             }
             
-            return storedEvents.stream()
-                .map(StoredEvent::getEvent)
-                .filter(event -> event.getAggregateVersion() > fromVersion)
-                .collect(Collectors.toList());
+            int size = stream.size();
+            return slice(stream, lowerBound(stream, fromVersion + 1, size), size);
         });
     }
     
     @Override
     public CompletableFuture<List<DomainEvent>> getEventsInRange(String aggregateId, long fromVersion, long toVersion) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<StoredEvent> storedEvents = eventsByAggregate.get(aggregateId);
-            if (storedEvents == null) {
+        return executor.supply(() -> {
+            AggregateStream stream = eventsByAggregate.get(aggregateId);
+            if (stream == null || fromVersion > toVersion) {
                 return Collections.emptyList();
             }
             
-            return storedEvents.stream()
-                .map(StoredEvent::getEvent)
-                .filter(event -> event.getAggregateVersion() >= fromVersion && 
-                               event.getAggregateVersion() <= toVersion)
-                .collect(Collectors.toList());
+            int size = stream.size();
+            int from = lowerBound(stream, fromVersion, size);
+            int to = toVersion == Long.MAX_VALUE ? size : lowerBound(stream, toVersion + 1, size);
+            return slice(stream, from, to);
         });
     }
     
+    private int lowerBound(AggregateStream stream, long version, int size) {
+        return stream.lowerBound(version, size, allEvents::aggregateVersion);
+    }
+    
+    private List<DomainEvent> slice(AggregateStream stream, int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return Collections.emptyList();
+        }
+        return new StreamView(stream, fromIndex, toIndex, allEvents::get);
+    }
+    
     @Override
     public CompletableFuture<Long> getCurrentVersion(String aggregateId) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<StoredEvent> storedEvents = eventsByAggregate.get(aggregateId);
-            if (storedEvents == null || storedEvents.isEmpty()) {
-                return -1L;
+        return executor.supply(() -> {
+            AggregateStream stream = eventsByAggregate.get(aggregateId);
+            if (stream == null || stream.size() == 0) {
+                return NO_STREAM;
             }
             
-            return storedEvents.get(storedEvents.size() - 1).getEvent().getAggregateVersion();
+            return stream.getVersion();
         });
     }
     
     @Override
     public CompletableFuture<List<DomainEvent>> getAllEvents() {
-        return CompletableFuture.supplyAsync(() -> {
-            return allEvents.stream()
-                .map(StoredEvent::getEvent)
-                .collect(Collectors.toList());
+        return executor.supply(() -> {
+            long size = allEvents.size();
+            List<DomainEvent> events = new ArrayList<>((int) size);
+            for (long i = 0; i < size; i++) {
+                events.add(allEvents.get(i));
+            }
+            return events;
         });
     }
     
+    @Override
+    public CompletableFuture<List<DomainEvent>> readAllEvents(long fromPosition, int maxCount) {
+        if (fromPosition < 0 || maxCount <= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                "Position must not be negative and max count must be positive"));
+        }
+        return executor.supply(() -> {
+            long end = Math.min(allEvents.size(), fromPosition + maxCount);
+            List<DomainEvent> events = new ArrayList<>((int) Math.max(0, end - fromPosition));
+            for (long i = fromPosition; i < end; i++) {
+                events.add(allEvents.get(i));
+            }
+            return events;
+        });
+    }
+    
+    @Override
+    public Subscription subscribe(long fromPosition, int batchSize, EventSubscriber subscriber) {
+        return CatchUpSubscription.start(this, allEvents::size, appendSignal, fromPosition, batchSize, subscriber);
+    }
+    
     @Override
     public CompletableFuture<List<DomainEvent>> getEventsFromTime(Instant fromTime) {
-        return CompletableFuture.supplyAsync(() -> {
-            return allEvents.stream()
-                .map(StoredEvent::getEvent)
-                .filter(event -> !event.getOccurredAt().isBefore(fromTime))
-                .collect(Collectors.toList());
+        return executor.supply(() -> {
+            long size = allEvents.size();
+            long fromMicros = EventClock.toMicros(fromTime);
+            List<DomainEvent> events = new ArrayList<>();
+            for (long i = allEvents.startPosition(fromMicros); i < size; i++) {
+                DomainEvent event = allEvents.get(i);
+                if (event.getOccurredAtMicros() >= fromMicros) {
+                    events.add(event);
+                }
+            }
+            return events;
         });
     }
     
     @Override
     public CompletableFuture<Boolean> aggregateExists(String aggregateId) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<StoredEvent> storedEvents = eventsByAggregate.get(aggregateId);
-            return storedEvents != null && !storedEvents.isEmpty();
+        return executor.supply(() -> {
+            AggregateStream stream = eventsByAggregate.get(aggregateId);
+            return stream != null && stream.size() > 0;
         });
     }
     
     public CompletableFuture<EventStoreStats> getStats() {
-        return CompletableFuture.supplyAsync(() -> {
-            int totalEvents = allEvents.size();
+        return executor.supply(() -> {
+            int totalEvents = (int) allEvents.size();
             int totalAggregates = eventsByAggregate.size();
             
             Map<String, Integer> eventsPerAggregate = eventsByAggregate.entrySet().stream()
@@ -170,6 +348,10 @@ public class InMemoryEventStore implements EventStore {
         });
     }
     
+    public StoreExecutor.LatencyStats getLatencyStats() {
+        return executor.getLatencyStats();
+    }
+    
     public static class EventStoreStats {
         private final int totalEvents;
         private final int totalAggregates;
@@ -199,4 +381,4 @@ public class InMemoryEventStore implements EventStore {
                     totalEvents, totalAggregates, eventsPerAggregate);
         }
     }
-}
\ No newline at end of file
+}
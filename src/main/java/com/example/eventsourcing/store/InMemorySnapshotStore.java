@@ -0,0 +1,33 @@
+package com.example.eventsourcing.store;
+
+import com.example.eventsourcing.core.Snapshot;
+import com.example.eventsourcing.core.SnapshotStore;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot store that keeps the latest snapshot of each aggregate in a map.
+ */
+public class InMemorySnapshotStore<S> implements SnapshotStore<S> {
+    
+    private final Map<String, Snapshot<S>> snapshots = new ConcurrentHashMap<>();
+    
+    @Override
+    public CompletableFuture<Void> saveSnapshot(Snapshot<S> snapshot) {
+        snapshots.merge(snapshot.getAggregateId(), snapshot,
+            (current, candidate) -> candidate.getVersion() > current.getVersion() ? candidate : current);
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    @Override
+    public CompletableFuture<Optional<Snapshot<S>>> getLatestSnapshot(String aggregateId) {
+        return CompletableFuture.completedFuture(Optional.ofNullable(snapshots.get(aggregateId)));
+    }
+    
+    public int size() {
+        return snapshots.size();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.eventsourcing.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * One fixed-size, preallocated file of the event log, mapped into memory.
+ * <p>
+ * Unwritten space is zero-filled, so a zero record length marks the end of the data.
+ */
+final class LogSegment implements Closeable {
+    
+    private final int index;
+    private final Path path;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    
+    private LogSegment(int index, Path path, RandomAccessFile file, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.file = file;
+        this.buffer = buffer;
+    }
+    
+    static LogSegment open(Path directory, int index, int size) throws IOException {
+        Path path = directory.resolve(fileName(index));
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+        try {
+            if (file.length() < size) {
+                file.setLength(size);
+            }
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new LogSegment(index, path, file, buffer);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+    
+    static String fileName(int index) {
+        return String.format("segment-%08d.log", index);
+    }
+    
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith("segment-") && name.endsWith(".log");
+    }
+    
+    static int indexOf(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring("segment-".length(), name.length() - ".log".length()));
+    }
+    
+    int getIndex() {
+        return index;
+    }
+    
+    Path getPath() {
+        return path;
+    }
+    
+    int capacity() {
+        return buffer.capacity();
+    }
+    
+    /**
+     * Returns a read-only view of {@code [offset, offset + length)} backed by the mapping.
+     */
+    ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.position(offset).limit(offset + length);
+        return view.slice();
+    }
+    
+    int getInt(int offset) {
+        return buffer.getInt(offset);
+    }
+    
+    long getLong(int offset) {
+        return buffer.getLong(offset);
+    }
+    
+    byte get(int offset) {
+        return buffer.get(offset);
+    }
+    
+    void zero(int fromOffset, int toOffset) {
+        byte[] zeros = new byte[Math.min(64 * 1024, Math.max(0, toOffset - fromOffset))];
+        ByteBuffer view = buffer.duplicate();
+        view.position(fromOffset);
+        while (view.position() < toOffset) {
+            view.put(zeros, 0, Math.min(zeros.length, toOffset - view.position()));
+        }
+    }
+    
+    /**
+     * Writes {@code source} at {@code offset} through the file channel. The mapping sees the
+     * new bytes through the shared page cache.
+     */
+    void write(ByteBuffer source, int offset) throws IOException {
+        FileChannel channel = file.getChannel();
+        long position = offset;
+        while (source.hasRemaining()) {
+            position += channel.write(source, position);
+        }
+    }
+    
+    void sync() throws IOException {
+        file.getChannel().force(false);
+    }
+    
+    void force() {
+        buffer.force();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
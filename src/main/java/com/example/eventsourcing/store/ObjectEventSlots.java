@@ -0,0 +1,49 @@
+package com.example.eventsourcing.store;
+
+import com.example.eventsourcing.core.DomainEvent;
+
+/**
+ * Keeps the event objects themselves, in fixed-size chunks so that growing the log never
+ * copies existing slots.
+ */
+final class ObjectEventSlots implements EventSlots {
+    
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    
+    private volatile DomainEvent[][] chunks = new DomainEvent[16][];
+    
+    @Override
+    public void ensureCapacity(long requiredSize) {
+        int requiredChunks = (int) ((requiredSize + CHUNK_MASK) >>> CHUNK_SHIFT);
+        DomainEvent[][] current = chunks;
+        if (requiredChunks <= current.length && current[requiredChunks - 1] != null) {
+            return;
+        }
+        synchronized (this) {
+            current = chunks;
+            DomainEvent[][] grown = current;
+            if (requiredChunks > current.length) {
+                grown = new DomainEvent[Math.max(requiredChunks, current.length * 2)][];
+                System.arraycopy(current, 0, grown, 0, current.length);
+            }
+            for (int i = 0; i < requiredChunks; i++) {
+                if (grown[i] == null) {
+                    grown[i] = new DomainEvent[CHUNK_SIZE];
+                }
+            }
+            chunks = grown;
+        }
+    }
+    
+    @Override
+    public void set(long sequence, DomainEvent event) {
+        chunks[(int) (sequence >>> CHUNK_SHIFT)][(int) (sequence & CHUNK_MASK)] = event;
+    }
+    
+    @Override
+    public DomainEvent get(long sequence) {
+        return chunks[(int) (sequence >>> CHUNK_SHIFT)][(int) (sequence & CHUNK_MASK)];
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.eventsourcing.store;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Decides where event store operations run and records how long callers wait for them.
+ * <p>
+ * The in-memory work behind most store operations is far cheaper than a thread hop, so
+ * {@link #synchronous()} runs it on the calling thread and returns completed futures.
+ * The other modes move the work off the caller: {@link #dedicated(int, int)} uses a
+ * bounded pool owned by the store, {@link #virtualThreads()} starts a virtual thread per
+ * operation (JDK 21 or later) and {@link #commonPool()} keeps the historical behavior.
+ */
+public final class StoreExecutor implements AutoCloseable {
+    
+    public enum Mode {
+        SYNCHRONOUS,
+        DEDICATED,
+        VIRTUAL_THREADS,
+        COMMON_POOL
+    }
+    
+    private final Mode mode;
+    private final Executor executor;
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    
+    private StoreExecutor(Mode mode, Executor executor) {
+        this.mode = mode;
+        this.executor = executor;
+    }
+    
+    public static StoreExecutor synchronous() {
+        return new StoreExecutor(Mode.SYNCHRONOUS, null);
+    }
+    
+    /**
+     * A pool of {@code threads} daemon threads with a queue of {@code queueCapacity}
+     * operations. When the queue is full the caller runs the operation itself.
+     */
+    public static StoreExecutor dedicated(int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "event-store-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        return new StoreExecutor(Mode.DEDICATED, pool);
+    }
+    
+    /**
+     * One virtual thread per operation.
+     *
+     * @throws UnsupportedOperationException if the running JDK has no virtual threads
+     */
+    public static StoreExecutor virtualThreads() {
+        try {
+            Object pool = java.util.concurrent.Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+            return new StoreExecutor(Mode.VIRTUAL_THREADS, (Executor) pool);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(
+                "Virtual threads require JDK 21 or later, running on " + Runtime.version(), e);
+        }
+    }
+    
+    public static StoreExecutor commonPool() {
+        return new StoreExecutor(Mode.COMMON_POOL, ForkJoinPool.commonPool());
+    }
+    
+    public Mode getMode() {
+        return mode;
+    }
+    
+    <T> CompletableFuture<T> supply(Supplier<T> operation) {
+        long start = System.nanoTime();
+        if (executor == null) {
+            CompletableFuture<T> future;
+            try {
+                future = CompletableFuture.completedFuture(operation.get());
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            record(start);
+            return future;
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return operation.get();
+            } finally {
+                record(start);
+            }
+        }, executor);
+    }
+    
+    CompletableFuture<Void> run(Runnable operation) {
+        return supply(() -> {
+            operation.run();
+            return null;
+        });
+    }
+    
+    private void record(long start) {
+        long elapsed = System.nanoTime() - start;
+        operations.increment();
+        totalNanos.add(elapsed);
+        maxNanos.accumulateAndGet(elapsed, Math::max);
+    }
+    
+    public LatencyStats getLatencyStats() {
+        return new LatencyStats(mode, operations.sum(), totalNanos.sum(), maxNanos.get());
+    }
+    
+    /**
+     * Shuts down a pool owned by this executor. Synchronous and common-pool executors own none.
+     */
+    @Override
+    public void close() {
+        if (executor instanceof ExecutorService && mode != Mode.COMMON_POOL) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+    
+    public static class LatencyStats {
+        private final Mode mode;
+        private final long operations;
+        private final long totalNanos;
+        private final long maxNanos;
+        
+        public LatencyStats(Mode mode, long operations, long totalNanos, long maxNanos) {
+            this.mode = mode;
+            this.operations = operations;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+        
+        public Mode getMode() {
+            return mode;
+        }
+        
+        public long getOperations() {
+            return operations;
+        }
+        
+        public double getMeanMicros() {
+            return operations == 0 ? 0 : totalNanos / 1_000.0 / operations;
+        }
+        
+        public double getMaxMicros() {
+            return maxNanos / 1_000.0;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("LatencyStats{mode=%s, operations=%d, meanMicros=%.2f, maxMicros=%.2f}",
+                    mode, operations, getMeanMicros(), getMaxMicros());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.eventsourcing.store;
+
+import com.example.eventsourcing.core.DomainEvent;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.function.LongFunction;
+
+/**
+ * Read-only view over a slice of an {@link AggregateStream}. Streams are append-only,
+ * so the slice never changes after the view is created.
+ */
+final class StreamView extends AbstractList<DomainEvent> implements RandomAccess {
+    
+    private final AggregateStream stream;
+    private final int fromIndex;
+    private final int size;
+    private final LongFunction<DomainEvent> reader;
+    
+    StreamView(AggregateStream stream, int fromIndex, int toIndex, LongFunction<DomainEvent> reader) {
+        this.stream = stream;
+        this.fromIndex = fromIndex;
+        this.size = toIndex - fromIndex;
+        this.reader = reader;
+    }
+    
+    @Override
+    public DomainEvent get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return reader.apply(stream.positionAt(fromIndex + index));
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.eventsourcing.store;
+
+import java.util.Arrays;
+
+/**
+ * Sparse index from global position to time, used to skip the part of the log that
+ * cannot contain events at or after a given instant.
+ * <p>
+ * Entry {@code i} holds the latest stored-at time of every event before position
+ * {@code i * INTERVAL}. The entries never decrease, so they can be binary searched even
+ * though concurrent appends may store events slightly out of time order. Stores must
+ * never give an event a stored-at time earlier than its occurred-at time.
+ */
+final class TimeIndex {
+    
+    static final int INTERVAL = 1024;
+    
+    private volatile long[] maxMicrosBefore = new long[64];
+    private volatile int entries;
+    private long runningMaxMicros = Long.MIN_VALUE;
+    
+    /**
+     * Records {@code count} events starting at {@code firstPosition}, all stored at
+     * {@code storedAtMicros}. Calls must be made in position order by one thread at a time.
+     */
+    void record(long firstPosition, int count, long storedAtMicros) {
+        long end = firstPosition + count;
+        long nextEntryPosition = (long) entries * INTERVAL;
+        while (nextEntryPosition < end) {
+            long maxBefore = runningMaxMicros;
+            if (nextEntryPosition > firstPosition) {
+                maxBefore = Math.max(maxBefore, storedAtMicros);
+            }
+            append(maxBefore);
+            nextEntryPosition += INTERVAL;
+        }
+        runningMaxMicros = Math.max(runningMaxMicros, storedAtMicros);
+    }
+    
+    private void append(long maxBefore) {
+        long[] current = maxMicrosBefore;
+        int count = entries;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, count * 2);
+            maxMicrosBefore = current;
+        }
+        current[count] = maxBefore;
+        entries = count + 1;
+    }
+    
+    /**
+     * Returns a position such that every event before it occurred before {@code micros}.
+     */
+    long startPosition(long micros) {
+        int count = entries;
+        long[] current = maxMicrosBefore;
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (current[mid] < micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == 0 ? 0 : (long) (low - 1) * INTERVAL;
+    }
+}
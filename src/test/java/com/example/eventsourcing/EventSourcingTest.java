@@ -1,19 +1,62 @@
 package com.example.eventsourcing;
 
+import com.example.eventsourcing.codec.BinaryEventCodec;
+import com.example.eventsourcing.codec.JsonEventCodec;
+import com.example.eventsourcing.core.AbstractDomainEvent;
+import com.example.eventsourcing.core.CoarseEventClock;
+import com.example.eventsourcing.core.ConcurrencyException;
 import com.example.eventsourcing.core.DomainEvent;
+import com.example.eventsourcing.core.EventClock;
+import com.example.eventsourcing.core.EventHandlers;
+import com.example.eventsourcing.core.EventIdGenerator;
 import com.example.eventsourcing.core.EventStore;
+import com.example.eventsourcing.core.ManualEventClock;
+import com.example.eventsourcing.core.Snapshot;
+import com.example.eventsourcing.core.SnapshotPolicy;
+import com.example.eventsourcing.core.StreamAppend;
+import com.example.eventsourcing.core.StringDictionary;
+import com.example.eventsourcing.core.Subscription;
+import com.example.eventsourcing.domain.account.AccountEventSchemas;
+import com.example.eventsourcing.domain.account.AccountOpened;
+import com.example.eventsourcing.domain.account.AccountState;
 import com.example.eventsourcing.domain.account.BankAccount;
+import com.example.eventsourcing.domain.account.BankAccountRepository;
 import com.example.eventsourcing.domain.account.InsufficientFundsException;
+import com.example.eventsourcing.domain.account.Money;
+import com.example.eventsourcing.domain.account.MoneyDeposited;
+import com.example.eventsourcing.domain.account.MoneyWithdrawn;
 import com.example.eventsourcing.projection.AccountBalanceProjection;
+import com.example.eventsourcing.projection.FileCheckpointStore;
+import com.example.eventsourcing.projection.InMemoryCheckpointStore;
+import com.example.eventsourcing.projection.ProjectionDispatcher;
+import com.example.eventsourcing.projection.ProjectionRunner;
 import com.example.eventsourcing.projection.TransactionHistoryProjection;
+import com.example.eventsourcing.store.Durability;
+import com.example.eventsourcing.store.FileEventStore;
 import com.example.eventsourcing.store.InMemoryEventStore;
+import com.example.eventsourcing.store.InMemorySnapshotStore;
+import com.example.eventsourcing.store.StoreExecutor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -29,15 +72,21 @@ import static org.assertj.core.api.Assertions.*;
  */
 public class EventSourcingTest {
     
+    private static final int READ_BATCH_SIZE = 100;
+    
     private EventStore eventStore;
     private AccountBalanceProjection balanceProjection;
     private TransactionHistoryProjection transactionProjection;
+    private ProjectionRunner projectionRunner;
     
     @BeforeEach
     void setUp() {
         eventStore = new InMemoryEventStore();
         balanceProjection = new AccountBalanceProjection("TestBalanceProjection");
         transactionProjection = new TransactionHistoryProjection("TestTransactionProjection");
+        projectionRunner = new ProjectionRunner(eventStore, new InMemoryCheckpointStore(), READ_BATCH_SIZE)
+            .register(balanceProjection)
+            .register(transactionProjection);
     }
     
     @Test
@@ -332,12 +381,1038 @@ public class EventSourcingTest {
             .hasMessageContaining("Cannot deposit to a closed account");
     }
     
+    @Test
+    void testConcurrentModificationIsRejected() throws Exception {
+        // Given
+        BankAccount account = new BankAccount("John Doe", "CHECKING", new BigDecimal("1000.00"));
+        saveAccount(account);
+        
+        BankAccount firstCopy = loadAccount(account.getId());
+        BankAccount secondCopy = loadAccount(account.getId());
+        
+        // When
+        firstCopy.withdraw(new BigDecimal("800.00"), "First withdrawal", "John Doe");
+        secondCopy.withdraw(new BigDecimal("800.00"), "Second withdrawal", "John Doe");
+        saveAccount(firstCopy);
+        
+        // Then
+        assertThatThrownBy(() -> saveAccount(secondCopy))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(ConcurrencyException.class);
+        assertThatThrownBy(() -> eventStore.appendEvents(account.getId(), EventStore.NO_STREAM,
+                secondCopy.getUncommittedEvents()).get())
+            .hasCauseInstanceOf(ConcurrencyException.class);
+        
+        assertThat(eventStore.getCurrentVersion(account.getId()).get()).isEqualTo(2L);
+        assertThat(loadAccount(account.getId()).getBalance()).isEqualTo(new BigDecimal("200.00"));
+    }
+    
+    @Test
+    void testConcurrentFirstAppendsUseNoStream() throws Exception {
+        // Given - several writers race to open the same new aggregate
+        String accountId = new BankAccount("Racer", "CHECKING", BigDecimal.ONE).getId();
+        assertThat(eventStore.getCurrentVersion(accountId).get()).isEqualTo(EventStore.NO_STREAM);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> appends = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            AccountOpened opened = new AccountOpened(UUID.randomUUID(), accountId, 1,
+                EventClock.system().currentTimeMicros(), 1, "Racer " + i, "CHECKING", 100);
+            appends.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                    long version = eventStore.getCurrentVersion(accountId).get();
+                    return eventStore.appendEvents(accountId, version, List.of(opened));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }).thenCompose(append -> append));
+        }
+        
+        // When
+        start.countDown();
+        
+        // Then - only one writer opens the account, the others see a conflict
+        int opened = 0;
+        for (CompletableFuture<Void> append : appends) {
+            try {
+                append.get(5, TimeUnit.SECONDS);
+                opened++;
+            } catch (ExecutionException e) {
+                assertThat(e).hasCauseInstanceOf(ConcurrencyException.class);
+            }
+        }
+        assertThat(opened).isEqualTo(1);
+        assertThat(eventStore.getCurrentVersion(accountId).get()).isEqualTo(1L);
+    }
+    
+    @Test
+    void testConcurrentAppendsKeepGlobalOrder() throws Exception {
+        // Given
+        List<BankAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            BankAccount account = new BankAccount("Holder " + i, "CHECKING", new BigDecimal("100.00"));
+            saveAccount(account);
+            accounts.add(account);
+        }
+        
+        // When
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (BankAccount account : accounts) {
+            writers.add(CompletableFuture.runAsync(() -> {
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        account.deposit(new BigDecimal("1.00"), "Deposit " + i, "Tester");
+                        saveAccount(account);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        CompletableFuture.allOf(writers.toArray(new CompletableFuture[0])).get();
+        
+        // Then
+        assertThat(eventStore.getAllEvents().get()).hasSize(8 * 201);
+        for (BankAccount account : accounts) {
+            BankAccount reloaded = loadAccount(account.getId());
+            assertThat(reloaded.getVersion()).isEqualTo(201);
+            assertThat(reloaded.getBalance()).isEqualTo(new BigDecimal("300.00"));
+        }
+    }
+    
+    @Test
+    void testFileEventStoreSurvivesRestart(@TempDir Path directory) throws Exception {
+        // Given
+        BankAccount account = new BankAccount("John Doe", "CHECKING", new BigDecimal("1000.00"));
+        account.deposit(new BigDecimal("500.00"), "Salary", "John Doe");
+        account.withdraw(new BigDecimal("200.00"), "Shopping", "John Doe");
+        
+        try (FileEventStore fileStore = new FileEventStore(directory, new BinaryEventCodec(AccountEventSchemas.registry()), 1024)) {
+            fileStore.appendEvents(account.getId(), EventStore.NO_STREAM, account.getUncommittedEvents()).get();
+        }
+        
+        // When
+        try (FileEventStore reopened = new FileEventStore(directory, new BinaryEventCodec(AccountEventSchemas.registry()), 1024)) {
+            List<DomainEvent> events = reopened.getEvents(account.getId()).get();
+            BankAccount reconstructed = new BankAccount(account.getId(), events);
+            
+            // Then
+            assertThat(events).hasSize(3);
+            assertThat(events.get(0).getEventId()).isEqualTo(account.getUncommittedEvents().get(0).getEventId());
+            assertThat(reconstructed.getBalance()).isEqualTo(new BigDecimal("1300.00"));
+            assertThat(reopened.getCurrentVersion(account.getId()).get()).isEqualTo(3L);
+            assertThat(reopened.getEventsInRange(account.getId(), 2, 3).get()).hasSize(2);
+            assertThat(reopened.getEventsInRange(account.getId(), Long.MIN_VALUE, 1).get())
+                .containsExactly(events.get(0));
+            assertThat(reopened.getEventsInRange(account.getId(), 3, 10).get()).containsExactly(events.get(2));
+            assertThat(reopened.getEventsFromVersion(account.getId(), 1).get()).containsExactly(events.get(1), events.get(2));
+            assertThat(reopened.getEventsFromVersion(account.getId(), 3).get()).isEmpty();
+        }
+    }
+    
+    @Test
+    void testFileEventStoreGroupCommitsConcurrentAppendsAtEveryDurability(@TempDir Path directory) throws Exception {
+        for (Durability durability : Durability.values()) {
+            // Given
+            Path storeDirectory = directory.resolve(durability.name());
+            List<BankAccount> accounts = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                BankAccount account = new BankAccount("Holder " + i, "CHECKING", new BigDecimal("100.00"));
+                for (int j = 0; j < 49; j++) {
+                    account.deposit(new BigDecimal("1.00"), "Deposit " + j, "Tester");
+                }
+                accounts.add(account);
+            }
+            
+            // When - every account appends its events one at a time from its own thread
+            List<CompletableFuture<Void>> appends = new CopyOnWriteArrayList<>();
+            try (FileEventStore fileStore = new FileEventStore(storeDirectory,
+                    new BinaryEventCodec(AccountEventSchemas.registry()), 4096, durability)) {
+                List<CompletableFuture<Void>> writers = new ArrayList<>();
+                for (BankAccount account : accounts) {
+                    writers.add(CompletableFuture.runAsync(() -> {
+                        List<DomainEvent> events = account.getUncommittedEvents();
+                        for (int i = 0; i < events.size(); i++) {
+                            appends.add(fileStore.appendEvents(account.getId(), i, List.of(events.get(i))));
+                        }
+                    }));
+                }
+                CompletableFuture.allOf(writers.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+                CompletableFuture.allOf(appends.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+            }
+            
+            // Then
+            assertThat(appends).hasSize(8 * 50).allMatch(append -> append.isDone() && !append.isCompletedExceptionally());
+            try (FileEventStore reopened = new FileEventStore(storeDirectory,
+                    new BinaryEventCodec(AccountEventSchemas.registry()), 4096, durability)) {
+                assertThat(reopened.getAllEvents().get()).hasSize(8 * 50);
+                for (BankAccount account : accounts) {
+                    assertThat(reopened.getEvents(account.getId()).get()).as(durability.name())
+                        .containsExactlyElementsOf(account.getUncommittedEvents());
+                    assertThat(new BankAccount(account.getId(), reopened.getEvents(account.getId()).get()).getBalance())
+                        .isEqualTo(new BigDecimal("149.00"));
+                }
+            }
+        }
+    }
+    
+    @Test
+    void testClosingFileEventStoreCompletesInFlightAppends(@TempDir Path directory) throws Exception {
+        // Given
+        FileEventStore fileStore = new FileEventStore(directory, new BinaryEventCodec(AccountEventSchemas.registry()));
+        List<CompletableFuture<Void>> appends = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(4);
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            BankAccount account = new BankAccount("Closing " + i, "CHECKING", new BigDecimal("100.00"));
+            for (int j = 0; j < 499; j++) {
+                account.deposit(new BigDecimal("1.00"), "Deposit " + j, "Tester");
+            }
+            writers.add(CompletableFuture.runAsync(() -> {
+                List<DomainEvent> events = account.getUncommittedEvents();
+                started.countDown();
+                for (int j = 0; j < events.size(); j++) {
+                    appends.add(fileStore.appendEvents(account.getId(), j, List.of(events.get(j))));
+                }
+            }));
+        }
+        
+        // When
+        started.await();
+        fileStore.close();
+        CompletableFuture.allOf(writers.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        
+        // Then - each append either committed or failed, none is left waiting
+        assertThat(appends).hasSize(4 * 500);
+        for (CompletableFuture<Void> append : appends) {
+            append.handle((ignored, error) -> null).get(5, TimeUnit.SECONDS);
+        }
+        BankAccount late = new BankAccount("Late", "CHECKING", BigDecimal.ONE);
+        assertThatThrownBy(() -> fileStore.appendEvents(late.getId(), EventStore.NO_STREAM, late.getUncommittedEvents()).get())
+            .hasCauseInstanceOf(IllegalStateException.class);
+    }
+    
+    @Test
+    void testVersionRangeQueries() throws Exception {
+        // Given
+        BankAccount account = new BankAccount("John Doe", "CHECKING", new BigDecimal("1000.00"));
+        for (int i = 0; i < 49; i++) {
+            account.deposit(new BigDecimal("10.00"), "Deposit " + i, "John Doe");
+        }
+        saveAccount(account);
+        
+        // When
+        List<DomainEvent> tail = eventStore.getEventsFromVersion(account.getId(), 45).get();
+        List<DomainEvent> range = eventStore.getEventsInRange(account.getId(), 10, 19).get();
+        
+        // Then
+        assertThat(tail).extracting(DomainEvent::getAggregateVersion).containsExactly(46L, 47L, 48L, 49L, 50L);
+        assertThat(range).hasSize(10);
+        assertThat(range.get(0).getAggregateVersion()).isEqualTo(10);
+        assertThat(range.get(9).getAggregateVersion()).isEqualTo(19);
+        assertThat(eventStore.getEventsFromVersion(account.getId(), 50).get()).isEmpty();
+        assertThat(eventStore.getEventsInRange(account.getId(), 20, 10).get()).isEmpty();
+    }
+    
+    @Test
+    void testPagedGlobalReads() throws Exception {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            BankAccount account = new BankAccount("Holder " + i, "SAVINGS", new BigDecimal("100.00"));
+            account.deposit(new BigDecimal("10.00"), "Deposit", "Holder " + i);
+            saveAccount(account);
+        }
+        
+        // When
+        List<DomainEvent> firstPage = eventStore.readAllEvents(0, 4).get();
+        List<DomainEvent> lastPage = eventStore.readAllEvents(8, 4).get();
+        List<DomainEvent> streamed;
+        try (Stream<DomainEvent> events = eventStore.streamAllEvents(3, 2)) {
+            streamed = events.collect(java.util.stream.Collectors.toList());
+        }
+        
+        // Then
+        List<DomainEvent> allEvents = eventStore.getAllEvents().get();
+        assertThat(firstPage).containsExactlyElementsOf(allEvents.subList(0, 4));
+        assertThat(lastPage).containsExactlyElementsOf(allEvents.subList(8, 10));
+        assertThat(streamed).containsExactlyElementsOf(allEvents.subList(3, 10));
+        assertThat(eventStore.readAllEvents(10, 4).get()).isEmpty();
+    }
+    
+    @Test
+    void testExecutorModes() throws Exception {
+        // Given
+        BankAccount account = new BankAccount("John Doe", "CHECKING", new BigDecimal("1000.00"));
+        saveAccount(account);
+        
+        // When & Then - the default store completes futures on the calling thread
+        assertThat(eventStore.getEvents(account.getId())).isDone();
+        
+        try (StoreExecutor pool = StoreExecutor.dedicated(2, 16)) {
+            InMemoryEventStore pooledStore = new InMemoryEventStore(pool);
+            pooledStore.appendEvents(account.getId(), EventStore.NO_STREAM,
+                eventStore.getEvents(account.getId()).get()).get();
+            
+            assertThat(pooledStore.getEvents(account.getId()).get()).hasSize(1);
+            assertThat(pooledStore.getLatencyStats().getMode()).isEqualTo(StoreExecutor.Mode.DEDICATED);
+            assertThat(pooledStore.getLatencyStats().getOperations()).isEqualTo(2);
+        }
+    }
+    
+    @Test
+    void testEventCodecsRoundTrip() throws Exception {
+        // Given
+        BankAccount account = new BankAccount("Jos\u00e9 Doe", "CHECKING", new BigDecimal("1000.00"));
+        account.deposit(new BigDecimal("500.25"), "Salary", "Jos\u00e9 Doe");
+        account.withdraw(new BigDecimal("0.05"), null, "ATM");
+        account.close("Moving abroad", "Jos\u00e9 Doe", null);
+        List<DomainEvent> events = account.getUncommittedEvents();
+        BinaryEventCodec binary = new BinaryEventCodec(AccountEventSchemas.registry());
+        JsonEventCodec json = new JsonEventCodec(AccountEventSchemas.registry());
+        
+        for (DomainEvent event : events) {
+            // When
+            byte[] binaryBytes = binary.serialize(event);
+            byte[] jsonBytes = json.serialize(event);
+            DomainEvent fromBinary = binary.deserialize(ByteBuffer.wrap(binaryBytes));
+            DomainEvent fromJson = json.deserialize(ByteBuffer.wrap(jsonBytes));
+            
+            // Then
+            assertThat(fromBinary).hasSameClassAs(event).isEqualTo(event);
+            assertThat(fromBinary.toString()).isEqualTo(event.toString());
+            assertThat(fromBinary.getOccurredAt()).isEqualTo(event.getOccurredAt());
+            assertThat(fromJson.toString()).isEqualTo(event.toString());
+            assertThat(fromJson.getOccurredAt()).isEqualTo(event.getOccurredAt());
+            assertThat(binaryBytes.length).isLessThan(jsonBytes.length / 2);
+        }
+    }
+    
+    @Test
+    void testSnapshotPlusTailHydration() throws Exception {
+        // Given
+        InMemorySnapshotStore<AccountState> snapshotStore = new InMemorySnapshotStore<>();
+        BankAccountRepository repository = new BankAccountRepository(eventStore, snapshotStore,
+            SnapshotPolicy.everyNEvents(10));
+        BankAccount account = new BankAccount("John Doe", "CHECKING", new BigDecimal("1000.00"));
+        for (int i = 0; i < 24; i++) {
+            account.deposit(new BigDecimal("10.00"), "Deposit " + i, "John Doe");
+        }
+        repository.save(account).get();
+        
+        BankAccount loaded = repository.findById(account.getId()).get().orElseThrow();
+        loaded.withdraw(new BigDecimal("40.00"), "Rent", "John Doe");
+        loaded.withdraw(new BigDecimal("60.00"), "Rent", "John Doe");
+        repository.save(loaded).get();
+        
+        // When
+        BankAccount reloaded = repository.findById(account.getId()).get().orElseThrow();
+        
+        // Then
+        Snapshot<AccountState> snapshot = snapshotStore.getLatestSnapshot(account.getId()).get().orElseThrow();
+        assertThat(snapshot.getVersion()).isEqualTo(25);
+        assertThat(snapshot.getState().getBalance()).isEqualTo(new BigDecimal("1240.00"));
+        assertThat(reloaded.getVersion()).isEqualTo(27);
+        assertThat(reloaded.getBalance()).isEqualTo(new BigDecimal("1140.00"));
+        assertThat(reloaded.getAccountHolderName()).isEqualTo("John Doe");
+        assertThat(reloaded.getBalance()).isEqualTo(loadAccount(account.getId()).getBalance());
+        assertThat(repository.findById("missing").get()).isEmpty();
+    }
+    
+    @Test
+    void testRepositoryCacheCatchesUpFromTail() throws Exception {
+        // Given
+        BankAccountRepository repository = new BankAccountRepository(eventStore, new InMemorySnapshotStore<>(),
+            SnapshotPolicy.never(), 2);
+        BankAccount account = new BankAccount("John Doe", "CHECKING", new BigDecimal("1000.00"));
+        repository.save(account).get();
+        
+        // When - another writer appends behind the repository's back
+        BankAccount other = loadAccount(account.getId());
+        other.deposit(new BigDecimal("250.00"), "Bonus", "Payroll");
+        saveAccount(other);
+        BankAccount loaded = repository.findById(account.getId()).get().orElseThrow();
+        BankAccount loadedAgain = repository.findById(account.getId()).get().orElseThrow();
+        
+        // Then
+        assertThat(loaded.getVersion()).isEqualTo(2);
+        assertThat(loaded.getBalance()).isEqualTo(new BigDecimal("1250.00"));
+        assertThat(loadedAgain).isNotSameAs(loaded);
+        assertThat(repository.getCacheStats().getHits()).isEqualTo(2);
+        
+        // When - a stale instance is saved
+        account.withdraw(new BigDecimal("100.00"), "Stale", "John Doe");
+        assertThatThrownBy(() -> repository.save(account).get())
+            .hasCauseInstanceOf(ConcurrencyException.class);
+        
+        // Then - the cache is rebuilt from the store
+        assertThat(repository.findById(account.getId()).get().orElseThrow().getBalance())
+            .isEqualTo(new BigDecimal("1250.00"));
+    }
+    
+    @Test
+    void testSubscriptionCatchesUpThenGoesLive() throws Exception {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            saveAccount(new BankAccount("Holder " + i, "SAVINGS", new BigDecimal("100.00")));
+        }
+        List<Long> positions = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(8);
+        
+        // When
+        try (Subscription subscription = eventStore.subscribe(2, 2, (position, event) -> {
+            positions.add(position);
+            delivered.countDown();
+        })) {
+            BankAccount account = loadAccount(eventStore.readAllEvents(0, 1).get().get(0).getAggregateId());
+            account.deposit(new BigDecimal("10.00"), "Live 1", "Holder 0");
+            account.deposit(new BigDecimal("20.00"), "Live 2", "Holder 0");
+            saveAccount(account);
+            for (int i = 0; i < 3; i++) {
+                saveAccount(new BankAccount("Late " + i, "CHECKING", new BigDecimal("50.00")));
+            }
+            
+            // Then
+            assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(positions).containsExactly(2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+            assertThat(subscription.getPosition()).isEqualTo(10);
+        }
+    }
+    
+    @Test
+    void testProjectionRunnerResumesFromCheckpoint(@TempDir Path directory) throws Exception {
+        // Given
+        Path checkpoints = directory.resolve("checkpoints.properties");
+        BankAccount account = new BankAccount("John Doe", "CHECKING", new BigDecimal("1000.00"));
+        saveAccount(account);
+        ProjectionRunner runner = new ProjectionRunner(eventStore, new FileCheckpointStore(checkpoints), 2)
+            .register(transactionProjection);
+        assertThat(runner.catchUp()).isEqualTo(1);
+        
+        account.deposit(new BigDecimal("100.00"), "Deposit 1", "John Doe");
+        account.deposit(new BigDecimal("200.00"), "Deposit 2", "John Doe");
+        account.withdraw(new BigDecimal("50.00"), "Withdrawal", "John Doe");
+        saveAccount(account);
+        
+        // When - only the new events are applied
+        long applied = runner.catchUp();
+        
+        // Then
+        assertThat(applied).isEqualTo(3);
+        assertThat(runner.catchUp()).isZero();
+        assertThat(transactionProjection.getTotalTransactionCount()).isEqualTo(4);
+        
+        // When - a restarted runner resumes from the persisted checkpoint
+        TransactionHistoryProjection restarted = new TransactionHistoryProjection("TestTransactionProjection");
+        ProjectionRunner resumed = new ProjectionRunner(eventStore, new FileCheckpointStore(checkpoints), 2)
+            .register(restarted);
+        
+        // Then
+        assertThat(resumed.getPosition("TestTransactionProjection")).isEqualTo(4);
+        assertThat(resumed.catchUp()).isZero();
+        resumed.rebuild("TestTransactionProjection");
+        assertThat(restarted.getTotalTransactionCount()).isEqualTo(4);
+    }
+    
+    @Test
+    void testParallelProjectionRebuild() throws Exception {
+        // Given
+        List<BankAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            BankAccount account = new BankAccount("Holder " + i, i % 2 == 0 ? "CHECKING" : "SAVINGS",
+                new BigDecimal("100.00"));
+            for (int j = 0; j < 10; j++) {
+                account.deposit(new BigDecimal("5.00"), "Deposit " + j, "Holder " + i);
+            }
+            account.withdraw(new BigDecimal("20.00"), "Withdrawal", "Holder " + i);
+            saveAccount(account);
+            accounts.add(account);
+        }
+        
+        // When
+        projectionRunner.rebuildAll(4);
+        
+        // Then
+        assertThat(projectionRunner.getPosition("TestBalanceProjection")).isEqualTo(240);
+        assertThat(transactionProjection.getTotalTransactionCount()).isEqualTo(240);
+        assertThat(balanceProjection.getTotalBalance()).isEqualTo(new BigDecimal("2600.00"));
+        for (BankAccount account : accounts) {
+            assertThat(balanceProjection.getAccountBalance(account.getId()).getLastEventVersion()).isEqualTo(12);
+            assertThat(transactionProjection.getTransactionsForAccount(account.getId()))
+                .extracting(TransactionHistoryProjection.TransactionRecord::getEventVersion)
+                .isSorted();
+        }
+        assertThat(projectionRunner.catchUp()).isZero();
+    }
+    
+    @Test
+    void testRingBufferDispatcherFansOutOnce() throws Exception {
+        // Given
+        AccountBalanceProjection balances = new AccountBalanceProjection("DispatchedBalances");
+        TransactionHistoryProjection history = new TransactionHistoryProjection("DispatchedHistory");
+        ProjectionDispatcher dispatcher = new ProjectionDispatcher(eventStore, 8, 3)
+            .register(balances)
+            .register(history, balances);
+        BankAccount first = new BankAccount("First", "CHECKING", new BigDecimal("100.00"));
+        saveAccount(first);
+        
+        // When
+        dispatcher.start(0);
+        for (int i = 0; i < 30; i++) {
+            first.deposit(new BigDecimal("1.00"), "Deposit " + i, "First");
+            saveAccount(first);
+        }
+        BankAccount second = new BankAccount("Second", "SAVINGS", new BigDecimal("50.00"));
+        saveAccount(second);
+        
+        try {
+            dispatcher.awaitProcessed(32, 5, TimeUnit.SECONDS);
+            
+            // Then
+            assertThat(dispatcher.getSequence(balances)).isEqualTo(32);
+            assertThat(dispatcher.getSequence(history)).isEqualTo(32);
+            assertThat(balances.getTotalBalance()).isEqualTo(new BigDecimal("180.00"));
+            assertThat(balances.getAccountBalance(first.getId()).getLastEventVersion()).isEqualTo(31);
+            assertThat(history.getTotalTransactionCount()).isEqualTo(32);
+            assertThat(history.getTransactionsForAccount(first.getId()))
+                .extracting(TransactionHistoryProjection.TransactionRecord::getEventVersion)
+                .isSorted();
+            
+            // idle projections park until the next event arrives
+            List<Thread> projectionThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("projection-Dispatched"))
+                .collect(Collectors.toList());
+            assertThat(projectionThreads).hasSize(2);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (projectionThreads.stream().anyMatch(thread -> thread.getState() != Thread.State.WAITING)
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertThat(projectionThreads).allMatch(thread -> thread.getState() == Thread.State.WAITING);
+            second.deposit(new BigDecimal("5.00"), "Deposit", "Second");
+            saveAccount(second);
+            dispatcher.awaitProcessed(33, 5, TimeUnit.SECONDS);
+            assertThat(balances.getTotalBalance()).isEqualTo(new BigDecimal("185.00"));
+        } finally {
+            dispatcher.close();
+        }
+    }
+    
+    @Test
+    void testEventHandlersDispatchByEventClass() throws Exception {
+        // Given
+        EventHandlers<List<String>> handlers = EventHandlers.<List<String>>builder()
+            .on(MoneyDeposited.class, (seen, event) -> seen.add("deposit " + event.getAmount()))
+            .on(MoneyWithdrawn.class, (seen, event) -> seen.add("withdrawal " + event.getAmount()))
+            .build();
+        BankAccount account = new BankAccount("Dispatch", "CHECKING", new BigDecimal("100.00"));
+        account.deposit(new BigDecimal("25.00"), "Deposit", "Dispatch");
+        account.withdraw(new BigDecimal("10.00"), "Withdrawal", "Dispatch");
+        List<DomainEvent> events = account.getUncommittedEvents();
+        
+        // When
+        List<String> seen = new ArrayList<>();
+        for (DomainEvent event : events) {
+            handlers.dispatch(seen, event);
+        }
+        BankAccount replayed = new BankAccount(account.getId(), events);
+        
+        // Then
+        assertThat(seen).containsExactly("deposit 25.00", "withdrawal 10.00");
+        assertThat(handlers.handles(MoneyDeposited.class)).isTrue();
+        assertThat(handlers.handles(AccountOpened.class)).isFalse();
+        assertThatThrownBy(() -> EventHandlers.<List<String>>builder()
+            .on(MoneyDeposited.class, (target, event) -> { })
+            .on(MoneyDeposited.class, (target, event) -> { }))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(replayed.getBalance()).isEqualTo(new BigDecimal("115.00"));
+        assertThat(replayed.getVersion()).isEqualTo(3);
+    }
+    
+    @Test
+    void testAtomicAppendCommitsAllStreamsOrNone() throws Exception {
+        // Given
+        BankAccount from = new BankAccount("From", "CHECKING", new BigDecimal("100.00"));
+        BankAccount to = new BankAccount("To", "SAVINGS", new BigDecimal("10.00"));
+        saveAccount(from);
+        saveAccount(to);
+        from.withdraw(new BigDecimal("40.00"), "Transfer out", "From", "TX-1");
+        to.deposit(new BigDecimal("40.00"), "Transfer in", "From", "TX-1");
+        
+        // When
+        Map<String, StreamAppend> stale = new LinkedHashMap<>();
+        stale.put(from.getId(), new StreamAppend(1, from.getUncommittedEvents()));
+        stale.put(to.getId(), new StreamAppend(0, to.getUncommittedEvents()));
+        Map<String, StreamAppend> current = new LinkedHashMap<>();
+        current.put(from.getId(), new StreamAppend(1, from.getUncommittedEvents()));
+        current.put(to.getId(), new StreamAppend(1, to.getUncommittedEvents()));
+        
+        // Then
+        assertThatThrownBy(() -> eventStore.appendEventsAtomically(stale).get())
+            .hasCauseInstanceOf(ConcurrencyException.class);
+        assertThat(eventStore.getCurrentVersion(from.getId()).get()).isEqualTo(1);
+        assertThat(eventStore.getAllEvents().get()).hasSize(2);
+        
+        eventStore.appendEventsAtomically(current).get();
+        List<DomainEvent> transfer = eventStore.readAllEvents(2, 10).get();
+        assertThat(transfer).extracting(DomainEvent::getAggregateId).containsExactly(from.getId(), to.getId());
+        assertThat(eventStore.getCurrentVersion(from.getId()).get()).isEqualTo(2);
+        assertThat(eventStore.getCurrentVersion(to.getId()).get()).isEqualTo(2);
+    }
+    
+    @Test
+    void testRetriedAppendIsDeduplicated() throws Exception {
+        // Given
+        BankAccount account = new BankAccount("Retry", "CHECKING", new BigDecimal("100.00"));
+        saveAccount(account);
+        account.deposit(new BigDecimal("50.00"), "Deposit", "Retry", "TX-42");
+        List<DomainEvent> deposit = account.getUncommittedEvents();
+        eventStore.appendEvents(account.getId(), 1, deposit).get();
+        
+        // When - the client retries the same append, then reuses the transaction id for a new deposit
+        eventStore.appendEvents(account.getId(), 1, deposit).get();
+        BankAccount reloaded = loadAccount(account.getId());
+        reloaded.deposit(new BigDecimal("50.00"), "Deposit", "Retry", "TX-42");
+        
+        // Then
+        assertThatThrownBy(() -> eventStore.appendEvents(account.getId(), 2, reloaded.getUncommittedEvents()).get())
+            .hasCauseInstanceOf(ConcurrencyException.class);
+        assertThat(eventStore.getCurrentVersion(account.getId()).get()).isEqualTo(2);
+        assertThat(loadAccount(account.getId()).getBalance()).isEqualTo(new BigDecimal("150.00"));
+        
+        BankAccount other = new BankAccount("Other", "SAVINGS", new BigDecimal("10.00"));
+        saveAccount(other);
+        other.deposit(new BigDecimal("5.00"), "Same transaction, other account", "Retry", "TX-42");
+        saveAccount(other);
+        assertThat(eventStore.getCurrentVersion(other.getId()).get()).isEqualTo(2);
+        
+        BankAccount mixed = loadAccount(account.getId());
+        mixed.deposit(new BigDecimal("50.00"), "Deposit", "Retry", "TX-42");
+        mixed.deposit(new BigDecimal("1.00"), "New deposit", "Retry", "TX-43");
+        assertThatThrownBy(() -> saveAccount(mixed))
+            .hasCauseInstanceOf(ConcurrencyException.class);
+        assertThat(eventStore.getCurrentVersion(account.getId()).get()).isEqualTo(2);
+    }
+    
+    @Test
+    void testFileEventStoreDeduplicatesOnlyWrittenEvents(@TempDir Path directory) throws Exception {
+        // Given
+        BankAccount account = new BankAccount("Retry", "CHECKING", new BigDecimal("100.00"));
+        account.deposit(new BigDecimal("50.00"), "Deposit", "Retry", "TX-42");
+        List<DomainEvent> events = account.getUncommittedEvents();
+        BankAccount rebuilt = new BankAccount(account.getId(), events.subList(0, 1));
+        rebuilt.deposit(new BigDecimal("50.00"), "Deposit", "Retry", "TX-42");
+        
+        try (FileEventStore fileStore = new FileEventStore(directory, new BinaryEventCodec(AccountEventSchemas.registry()), 1024)) {
+            // When - the same append is sent twice at once, then with a different event for TX-42
+            CompletableFuture<Void> first = fileStore.appendEvents(account.getId(), EventStore.NO_STREAM, events);
+            CompletableFuture<Void> retry = fileStore.appendEvents(account.getId(), EventStore.NO_STREAM, events);
+            CompletableFuture.allOf(first, retry).get();
+            
+            // Then
+            assertThatThrownBy(() -> fileStore.appendEvents(account.getId(), 1, rebuilt.getUncommittedEvents()).get())
+                .hasCauseInstanceOf(ConcurrencyException.class);
+            assertThat(fileStore.getCurrentVersion(account.getId()).get()).isEqualTo(2L);
+        }
+        
+        try (FileEventStore reopened = new FileEventStore(directory, new BinaryEventCodec(AccountEventSchemas.registry()), 1024)) {
+            reopened.appendEvents(account.getId(), EventStore.NO_STREAM, events).get();
+            assertThat(reopened.getEvents(account.getId()).get()).hasSize(2);
+        }
+    }
+    
+    @Test
+    void testAmountsAreHeldInMinorUnits() {
+        // Given
+        BankAccount account = new BankAccount("Minor Units", "CHECKING", new BigDecimal("1000"));
+        
+        // When
+        account.deposit(new BigDecimal("0.10"), "Deposit", "Minor Units");
+        account.deposit(new BigDecimal("0.2"), "Deposit", "Minor Units");
+        
+        // Then
+        assertThat(account.getBalance()).isEqualTo(new BigDecimal("1000.30"));
+        MoneyDeposited deposit = (MoneyDeposited) account.getUncommittedEvents().get(2);
+        assertThat(deposit.getAmountMinorUnits()).isEqualTo(20);
+        assertThat(deposit.getAmount()).isEqualTo(new BigDecimal("0.20"));
+        assertThat(Money.toMinorUnits(new BigDecimal("12.340"))).isEqualTo(1234);
+        
+        assertThatThrownBy(() -> account.deposit(new BigDecimal("0.001"), "Deposit", "Minor Units"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Money.add(Long.MAX_VALUE, 1))
+            .isInstanceOf(ArithmeticException.class);
+        assertThat(account.getVersion()).isEqualTo(3);
+    }
+    
+    @Test
+    void testEventIdsAreTimeOrdered() {
+        // Given
+        BankAccount account = new BankAccount("Ordered", "CHECKING", new BigDecimal("100.00"));
+        for (int i = 0; i < 1000; i++) {
+            account.deposit(new BigDecimal("1.00"), "Deposit", "Ordered");
+        }
+        
+        // When
+        List<DomainEvent> events = account.getUncommittedEvents();
+        
+        // Then
+        for (int i = 1; i < events.size(); i++) {
+            UUID previous = events.get(i - 1).getEventId();
+            UUID current = events.get(i).getEventId();
+            assertThat(current).isGreaterThan(previous);
+            assertThat(current.toString()).isGreaterThan(previous.toString());
+            assertThat(current.version()).isEqualTo(7);
+            assertThat(current.variant()).isEqualTo(2);
+        }
+        long millis = events.get(0).getEventId().getMostSignificantBits() >>> 16;
+        assertThat(millis).isCloseTo(System.currentTimeMillis(), within(60_000L));
+        
+        UUID fixed = UUID.fromString("00000000-0000-4000-8000-000000000001");
+        BankAccount fixedIds = new BankAccount("Fixed", "CHECKING", new BigDecimal("100.00"),
+            EventClock.system(), () -> fixed);
+        String transactionId = fixedIds.deposit(new BigDecimal("1.00"), "Deposit", "Fixed");
+        assertThat(fixedIds.getUncommittedEvents()).extracting(DomainEvent::getEventId).containsOnly(fixed);
+        assertThat(transactionId).isEqualTo(fixed.toString());
+    }
+    
+    @Test
+    void testEventTimesComeFromTheInjectedClock() throws Exception {
+        // Given
+        ManualEventClock clock = new ManualEventClock(Instant.parse("2024-01-01T00:00:00Z"));
+        InMemoryEventStore store = new InMemoryEventStore(4, StoreExecutor.synchronous(), clock);
+        
+        // When
+        BankAccount account = new BankAccount("Clocked", "CHECKING", new BigDecimal("100.00"), clock, EventIdGenerator.timeOrdered());
+        store.appendEvents(account.getId(), 0, account.getUncommittedEvents()).get();
+        account.markEventsAsCommitted();
+        clock.advance(Duration.ofMinutes(5));
+        account.deposit(new BigDecimal("10.00"), "Deposit", "Clocked");
+        store.appendEvents(account.getId(), 1, account.getUncommittedEvents()).get();
+        account.markEventsAsCommitted();
+        
+        // Then
+        List<DomainEvent> events = store.getEvents(account.getId()).get();
+        assertThat(events.get(0).getOccurredAt()).isEqualTo(Instant.parse("2024-01-01T00:00:00Z"));
+        assertThat(events.get(1).getOccurredAt()).isEqualTo(Instant.parse("2024-01-01T00:05:00Z"));
+        assertThat(events.get(1).getOccurredAtMicros()).isEqualTo(EventClock.toMicros(events.get(1).getOccurredAt()));
+        assertThat(store.getEventsFromTime(Instant.parse("2024-01-01T00:01:00Z")).get())
+            .containsExactly(events.get(1));
+        assertThat(account.toSnapshot().getTakenAt()).isEqualTo(Instant.parse("2024-01-01T00:05:00Z"));
+        
+        BankAccountRepository repository = new BankAccountRepository(store, new InMemorySnapshotStore<>(),
+            SnapshotPolicy.never(), BankAccountRepository.DEFAULT_CACHE_SIZE, clock, EventIdGenerator.timeOrdered());
+        BankAccount loaded = repository.findById(account.getId()).get().orElseThrow();
+        clock.advance(Duration.ofMinutes(5));
+        loaded.withdraw(new BigDecimal("5.00"), "Withdrawal", "Clocked");
+        assertThat(loaded.getUncommittedEvents().get(0).getOccurredAt()).isEqualTo(Instant.parse("2024-01-01T00:10:00Z"));
+        assertThat(repository.open("Opened", "SAVINGS", BigDecimal.ONE).getUncommittedEvents().get(0).getOccurredAt())
+            .isEqualTo(Instant.parse("2024-01-01T00:10:00Z"));
+        
+        try (CoarseEventClock coarse = CoarseEventClock.start(clock, Duration.ofMillis(1))) {
+            long before = coarse.currentTimeMicros();
+            clock.advance(Duration.ofSeconds(1));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coarse.currentTimeMicros() == before && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertThat(coarse.currentTimeMicros()).isEqualTo(clock.currentTimeMicros());
+        }
+    }
+    
+    @Test
+    void testTimeQueriesSkipAheadPastSeveralIndexIntervals(@TempDir Path directory) throws Exception {
+        // Given - more events than two time-index intervals of 1024, one second apart
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        ManualEventClock clock = new ManualEventClock(start);
+        InMemoryEventStore memoryStore = new InMemoryEventStore(4, StoreExecutor.synchronous(), clock);
+        try (FileEventStore fileStore = new FileEventStore(directory, new BinaryEventCodec(AccountEventSchemas.registry()),
+                64 * 1024, Durability.MEMORY, StoreExecutor.synchronous(), clock)) {
+            BankAccount account = new BankAccount("Timed", "CHECKING", new BigDecimal("100.00"),
+                clock, EventIdGenerator.timeOrdered());
+            List<DomainEvent> events = new ArrayList<>();
+            for (int i = 0; i < 2 * 1024 + 500; i++) {
+                if (i > 0) {
+                    clock.advance(Duration.ofSeconds(1));
+                    account.deposit(new BigDecimal("1.00"), "Deposit " + i, "Timed");
+                }
+                List<DomainEvent> uncommitted = account.getUncommittedEvents();
+                memoryStore.appendEvents(account.getId(), i, uncommitted).get();
+                fileStore.appendEvents(account.getId(), i, uncommitted).get();
+                account.markEventsAsCommitted();
+                events.addAll(uncommitted);
+            }
+            
+            for (EventStore store : List.of(memoryStore, fileStore)) {
+                // When
+                List<DomainEvent> middle = store.getEventsFromTime(start.plusSeconds(1500)).get();
+                List<DomainEvent> boundary = store.getEventsFromTime(start.plusSeconds(2048)).get();
+                List<DomainEvent> between = store.getEventsFromTime(start.plusMillis(1_500_500)).get();
+                
+                // Then
+                assertThat(middle).containsExactlyElementsOf(events.subList(1500, events.size()));
+                assertThat(boundary).containsExactlyElementsOf(events.subList(2048, events.size()));
+                assertThat(between).containsExactlyElementsOf(events.subList(1501, events.size()));
+                assertThat(store.getEventsFromTime(start.plusSeconds(events.size())).get()).isEmpty();
+            }
+        }
+    }
+    
+    @Test
+    void testColumnarStoreReturnsEqualEvents() throws Exception {
+        // Given
+        InMemoryEventStore columnar = InMemoryEventStore.columnar(AccountEventSchemas.registry());
+        BankAccount account = new BankAccount("Jos\u00e9 Doe", "CHECKING", new BigDecimal("1000.00"));
+        account.deposit(new BigDecimal("500.25"), "Salary", "Jos\u00e9 Doe");
+        account.withdraw(new BigDecimal("0.05"), null, "ATM", "not-a-uuid");
+        account.close("Moving abroad", "Jos\u00e9 Doe", null);
+        List<DomainEvent> events = account.getUncommittedEvents();
+        
+        // When
+        columnar.appendEvents(account.getId(), EventStore.NO_STREAM, events).get();
+        List<DomainEvent> stored = columnar.getEvents(account.getId()).get();
+        
+        // Then
+        assertThat(stored).hasSize(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertThat(stored.get(i)).hasSameClassAs(events.get(i)).isEqualTo(events.get(i));
+            assertThat(stored.get(i).toString()).isEqualTo(events.get(i).toString());
+            assertThat(stored.get(i).getOccurredAt()).isEqualTo(events.get(i).getOccurredAt());
+        }
+        assertThat(columnar.getEventsInRange(account.getId(), 2, 3).get())
+            .containsExactly(events.get(1), events.get(2));
+        assertThat(new BankAccount(account.getId(), stored).getBalance()).isEqualTo(account.getBalance());
+        
+        DomainEvent unregistered = new AbstractDomainEvent("other", 1, 1) {
+            @Override
+            public String getEventType() {
+                return "Unregistered";
+            }
+        };
+        assertThatThrownBy(() -> columnar.appendEvents("other", EventStore.NO_STREAM, List.of(unregistered)).get())
+            .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(columnar.getAllEvents().get()).hasSize(events.size());
+    }
+    
+    @Test
+    void testRepeatedStringsAreDictionaryEncoded() throws Exception {
+        // Given
+        BankAccount account = new BankAccount("Jane Roe", new String("SAVINGS"), new BigDecimal("100.00"));
+        account.deposit(new BigDecimal("50.00"), "Top up", new String("Jane Roe"));
+        List<DomainEvent> events = account.getUncommittedEvents();
+        BinaryEventCodec binary = new BinaryEventCodec(AccountEventSchemas.registry());
+        StringDictionary bounded = new StringDictionary(2);
+        
+        // When
+        AccountOpened decoded = (AccountOpened) binary.deserialize(ByteBuffer.wrap(binary.serialize(events.get(0))));
+        MoneyDeposited deposit = (MoneyDeposited) events.get(1);
+        transactionProjection.processEvents(events);
+        
+        // Then
+        AccountOpened opened = (AccountOpened) events.get(0);
+        assertThat(decoded.getAccountType()).isSameAs(opened.getAccountType());
+        assertThat(decoded.getAggregateId()).isEqualTo(opened.getAggregateId());
+        assertThat(StringDictionary.shared().codeOf(opened.getAggregateId())).isEqualTo(StringDictionary.NOT_ENCODED);
+        assertThat(deposit.getDepositedBy()).isSameAs(opened.getAccountHolderName());
+        assertThat(transactionProjection.getTransactionsByType(new String("DEPOSIT")))
+            .extracting(TransactionHistoryProjection.TransactionRecord::getTransactionId)
+            .containsExactly(deposit.getTransactionId());
+        assertThat(transactionProjection.getTransactionsByType("UNKNOWN_TYPE")).isEmpty();
+        
+        assertThat(bounded.encode("a")).isEqualTo(0);
+        assertThat(bounded.encode("b")).isEqualTo(1);
+        assertThat(bounded.encode("c")).isEqualTo(StringDictionary.NOT_ENCODED);
+        assertThat(bounded.codeOf("a")).isEqualTo(0);
+        assertThat(bounded.decode(1)).isEqualTo("b");
+        String c = new String("c");
+        assertThat(bounded.intern(c)).isSameAs(c);
+    }
+    
+    @Test
+    void testTransactionHistoryIndexesAnswerTypeAndRangeQueries() throws Exception {
+        // Given
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        ManualEventClock clock = new ManualEventClock(start);
+        BankAccount first = new BankAccount("First", "CHECKING", new BigDecimal("100.00"), clock, EventIdGenerator.timeOrdered());
+        BankAccount second = new BankAccount("Second", "SAVINGS", new BigDecimal("100.00"), clock, EventIdGenerator.timeOrdered());
+        clock.advance(Duration.ofMinutes(1));
+        first.deposit(new BigDecimal("10.00"), "Deposit", "First");
+        clock.advance(Duration.ofMinutes(1));
+        second.withdraw(new BigDecimal("20.00"), "Withdrawal", "Second");
+        clock.advance(Duration.ofMinutes(1));
+        second.deposit(new BigDecimal("30.00"), "Deposit", "Second");
+        
+        // When
+        transactionProjection.processEvents(second.getUncommittedEvents());
+        transactionProjection.processEvents(first.getUncommittedEvents());
+        
+        // Then
+        assertThat(transactionProjection.getTransactionsInDateRange(start, start)).hasSize(2);
+        assertThat(transactionProjection.getTransactionsInDateRange(start.plusSeconds(60), start.plusSeconds(120)))
+            .extracting(TransactionHistoryProjection.TransactionRecord::getAmount)
+            .containsExactly(new BigDecimal("10.00"), new BigDecimal("20.00"));
+        assertThat(transactionProjection.getTransactionsInDateRange(start.plusSeconds(60).plusNanos(1), start.plusSeconds(120)))
+            .extracting(TransactionHistoryProjection.TransactionRecord::getAmount)
+            .containsExactly(new BigDecimal("20.00"));
+        assertThat(transactionProjection.getTransactionsByType("DEPOSIT"))
+            .extracting(TransactionHistoryProjection.TransactionRecord::getAccountId)
+            .containsExactly(first.getId(), second.getId());
+        assertThat(transactionProjection.getTransactionsForAccount(second.getId(), start.plusSeconds(1), start.plusSeconds(600)))
+            .extracting(TransactionHistoryProjection.TransactionRecord::getTransactionType)
+            .containsExactly("WITHDRAWAL", "DEPOSIT");
+        assertThat(transactionProjection.getTransactionsForAccount("missing", start, start.plusSeconds(600))).isEmpty();
+        
+        transactionProjection.reset();
+        assertThat(transactionProjection.getTransactionsInDateRange(start, start.plusSeconds(600))).isEmpty();
+    }
+    
+    @Test
+    void testAccountHistoryPagesByEventVersion() throws Exception {
+        // Given
+        BankAccount account = new BankAccount("Pager", "CHECKING", new BigDecimal("100.00"));
+        for (int i = 0; i < 11; i++) {
+            account.deposit(new BigDecimal("1.00"), "Deposit " + i, "Pager");
+        }
+        transactionProjection.processEvents(account.getUncommittedEvents());
+        String accountId = account.getId();
+        
+        // When
+        List<TransactionHistoryProjection.TransactionRecord> latest = transactionProjection.getLatestTransactions(accountId, 5);
+        long cursor = latest.get(latest.size() - 1).getEventVersion();
+        List<TransactionHistoryProjection.TransactionRecord> older = transactionProjection.getTransactionsBefore(accountId, cursor, 5);
+        
+        // Then
+        assertThat(latest).extracting(TransactionHistoryProjection.TransactionRecord::getEventVersion)
+            .containsExactly(12L, 11L, 10L, 9L, 8L);
+        assertThat(older).extracting(TransactionHistoryProjection.TransactionRecord::getEventVersion)
+            .containsExactly(7L, 6L, 5L, 4L, 3L);
+        assertThat(transactionProjection.getTransactionsBefore(accountId, 3, 5))
+            .extracting(TransactionHistoryProjection.TransactionRecord::getEventVersion)
+            .containsExactly(2L, 1L);
+        assertThat(transactionProjection.getTransactionsBefore(accountId, 1, 5)).isEmpty();
+        assertThat(transactionProjection.getTransactionsAfter(accountId, 10, 5))
+            .extracting(TransactionHistoryProjection.TransactionRecord::getEventVersion)
+            .containsExactly(11L, 12L);
+        assertThat(transactionProjection.streamTransactionsNewestFirst(accountId).findFirst())
+            .hasValueSatisfying(record -> assertThat(record.getEventVersion()).isEqualTo(12));
+        assertThat(transactionProjection.getLatestTransactions("missing", 5)).isEmpty();
+        assertThat(transactionProjection.getTransactionCountForAccount(accountId)).isEqualTo(12);
+        assertThatThrownBy(() -> transactionProjection.getLatestTransactions(accountId, 0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    @Test
+    void testAccountActivityIsMaintainedIncrementally() throws Exception {
+        // Given
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        ManualEventClock clock = new ManualEventClock(start);
+        BankAccount account = new BankAccount("Active", "CHECKING", new BigDecimal("100.00"), clock, EventIdGenerator.timeOrdered());
+        clock.advance(Duration.ofMinutes(1));
+        account.deposit(new BigDecimal("10.25"), "Deposit", "Active");
+        account.deposit(new BigDecimal("5.00"), "Deposit", "Active");
+        clock.advance(Duration.ofMinutes(1));
+        account.withdraw(new BigDecimal("7.50"), "Withdrawal", "Active");
+        saveAccount(account);
+        
+        // When
+        projectionRunner.rebuildAll(2);
+        TransactionHistoryProjection.AccountActivity activity = transactionProjection.getAccountActivity(account.getId());
+        
+        // Then
+        assertThat(activity.getTotalDeposits()).isEqualTo(new BigDecimal("15.25"));
+        assertThat(activity.getDepositCount()).isEqualTo(2);
+        assertThat(activity.getTotalWithdrawals()).isEqualTo(new BigDecimal("7.50"));
+        assertThat(activity.getWithdrawalCount()).isEqualTo(1);
+        assertThat(activity.getTransactionCount()).isEqualTo(4);
+        assertThat(activity.getFirstActivity()).isEqualTo(start);
+        assertThat(activity.getLastActivity()).isEqualTo(start.plusSeconds(120));
+        assertThat(transactionProjection.getTotalDepositsForAccount(account.getId())).isEqualTo(new BigDecimal("15.25"));
+        assertThat(transactionProjection.getTotalWithdrawalsForAccount(account.getId())).isEqualTo(new BigDecimal("7.50"));
+        assertThat(transactionProjection.getTotalTransactionCount()).isEqualTo(4);
+        
+        // When - the same batch is applied again
+        transactionProjection.processEvents(eventStore.getEvents(account.getId()).get());
+        TransactionHistoryProjection.AccountActivity reapplied = transactionProjection.getAccountActivity(account.getId());
+        
+        // Then
+        assertThat(reapplied.getTotalDeposits()).isEqualTo(new BigDecimal("15.25"));
+        assertThat(reapplied.getDepositCount()).isEqualTo(2);
+        assertThat(reapplied.getTotalWithdrawals()).isEqualTo(new BigDecimal("7.50"));
+        assertThat(reapplied.getWithdrawalCount()).isEqualTo(1);
+        assertThat(reapplied.getTransactionCount()).isEqualTo(4);
+        assertThat(transactionProjection.getTotalTransactionCount()).isEqualTo(4);
+        
+        TransactionHistoryProjection.AccountActivity none = transactionProjection.getAccountActivity("missing");
+        assertThat(none.getTotalDeposits()).isEqualTo(BigDecimal.ZERO);
+        assertThat(none.getTransactionCount()).isZero();
+        assertThat(none.getFirstActivity()).isNull();
+    }
+    
+    @Test
+    void testTransactionHistoryIgnoresReappliedEvents() throws Exception {
+        // Given
+        BankAccount account = new BankAccount("Retried", "CHECKING", new BigDecimal("100.00"));
+        String depositId = account.deposit(new BigDecimal("25.00"), "Deposit", "Retried");
+        account.withdraw(new BigDecimal("10.00"), "Withdrawal", "Retried");
+        List<DomainEvent> events = account.getUncommittedEvents();
+        
+        // When
+        transactionProjection.processEvents(events);
+        transactionProjection.processEvents(events);
+        
+        // Then
+        assertThat(transactionProjection.getTotalTransactionCount()).isEqualTo(3);
+        assertThat(transactionProjection.getTransactionCountForAccount(account.getId())).isEqualTo(3);
+        assertThat(transactionProjection.getTransactionsForAccount(account.getId())).hasSize(3);
+        assertThat(transactionProjection.getTransactionsByType("DEPOSIT")).hasSize(1);
+        assertThat(transactionProjection.getTransactionsById(depositId)).hasSize(1);
+        assertThat(transactionProjection.getTransactionsInDateRange(Instant.EPOCH, Instant.now().plusSeconds(60)))
+            .hasSize(3);
+    }
+    
+    @Test
+    void testSnapshotPolicyMeasuresFromTheStoredSnapshot() throws Exception {
+        // Given - a policy that snapshots once 10 events have passed since the last snapshot
+        InMemorySnapshotStore<AccountState> snapshotStore = new InMemorySnapshotStore<>();
+        BankAccountRepository repository = new BankAccountRepository(eventStore, snapshotStore,
+            (snapshotVersion, currentVersion) -> currentVersion - snapshotVersion >= 10);
+        BankAccount account = new BankAccount("John Doe", "CHECKING", new BigDecimal("100.00"));
+        for (int i = 0; i < 5; i++) {
+            account.deposit(new BigDecimal("1.00"), "Deposit " + i, "John Doe");
+        }
+        repository.save(account).get();
+        
+        // When - saved again from the cached state, 12 events after the last (absent) snapshot
+        BankAccount loaded = repository.findById(account.getId()).get().orElseThrow();
+        for (int i = 0; i < 6; i++) {
+            loaded.deposit(new BigDecimal("1.00"), "Deposit " + i, "John Doe");
+        }
+        repository.save(loaded).get();
+        
+        // Then
+        assertThat(snapshotStore.getLatestSnapshot(account.getId()).get())
+            .hasValueSatisfying(snapshot -> assertThat(snapshot.getVersion()).isEqualTo(12));
+        
+        // When - three more events are well short of the next snapshot
+        BankAccount reloaded = repository.findById(account.getId()).get().orElseThrow();
+        for (int i = 0; i < 3; i++) {
+            reloaded.deposit(new BigDecimal("1.00"), "Deposit " + i, "John Doe");
+        }
+        repository.save(reloaded).get();
+        BankAccountRepository restarted = new BankAccountRepository(eventStore, snapshotStore,
+            (snapshotVersion, currentVersion) -> currentVersion - snapshotVersion >= 10);
+        
+        // Then
+        assertThat(snapshotStore.getLatestSnapshot(account.getId()).get())
+            .hasValueSatisfying(snapshot -> assertThat(snapshot.getVersion()).isEqualTo(12));
+        assertThat(restarted.findById(account.getId()).get().orElseThrow().getVersion()).isEqualTo(15);
+    }
+    
     // Helper methods
     
     private void saveAccount(BankAccount account) throws Exception {
         List<DomainEvent> uncommittedEvents = account.getUncommittedEvents();
         if (!uncommittedEvents.isEmpty()) {
-            eventStore.appendEvents(account.getId(), -1, uncommittedEvents).get();
+            long expectedVersion = account.getVersion() - uncommittedEvents.size();
+            eventStore.appendEvents(account.getId(), expectedVersion, uncommittedEvents).get();
             account.markEventsAsCommitted();
         }
     }
@@ -351,16 +1426,6 @@ public class EventSourcingTest {
     }
     
     private void updateProjections() throws Exception {
-        List<DomainEvent> allEvents = eventStore.getAllEvents().get();
-        
-        // Reset projections
-        balanceProjection.reset();
-        transactionProjection.reset();
-        
-        // Replay all events
-        for (DomainEvent event : allEvents) {
-            balanceProjection.processEvent(event);
-            transactionProjection.processEvent(event);
-        }
+        projectionRunner.catchUp();
     }
 }